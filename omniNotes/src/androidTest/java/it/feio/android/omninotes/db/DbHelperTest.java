@@ -17,11 +17,55 @@
 
 package it.feio.android.omninotes.db;
 
+import static it.feio.android.omninotes.db.DbHelper.KEY_ARCHIVED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_ATTACHMENT_ID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_ATTACHMENT_NOTE_ID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CATEGORY_ID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CONTENT;
+import static it.feio.android.omninotes.db.DbHelper.KEY_ID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_LOCKED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_NOTE_TAG;
+import static it.feio.android.omninotes.db.DbHelper.KEY_NOTE_TAG_NOTE_ID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_REMINDER;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TRASHED;
+import static it.feio.android.omninotes.db.DbHelper.TABLE_ATTACHMENTS;
+import static it.feio.android.omninotes.db.DbHelper.TABLE_NOTES;
+import static it.feio.android.omninotes.db.DbHelper.TABLE_NOTE_TAGS;
+import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_FILES;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_NOTE_TAGS_REBUILD_PENDING;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
+import static it.feio.android.omninotes.utils.TextHelper.CONTENT_SUBSTRING_LENGTH;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.pixplicity.easyprefs.library.Prefs;
 import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.helpers.NotesHelper;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteSummary;
+import it.feio.android.omninotes.models.Stats;
+import it.feio.android.omninotes.models.Tag;
+import it.feio.android.omninotes.utils.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -65,4 +109,485 @@ public class DbHelperTest extends BaseAndroidTestCase {
     assertEquals(1, dbHelper.getNotesByPattern("%").size());
   }
 
+  @Test
+  public void getNotesByPatternMatchesWordPrefixes() {
+    Note note1 = new Note();
+    note1.setTitle("Shopping list");
+    note1.setContent("apples and oranges");
+    dbHelper.updateNote(note1, true);
+    Note note2 = new Note();
+    note2.setTitle("Meeting");
+    note2.setContent("discuss the shop opening");
+    dbHelper.updateNote(note2, true);
+    assertEquals(2, dbHelper.getNotesByPattern("shop").size());
+    assertEquals(1, dbHelper.getNotesByPattern("ORANGE").size());
+    assertEquals(1, dbHelper.getNotesByPattern("shop apple").size());
+    assertEquals(0, dbHelper.getNotesByPattern("pples").size());
+  }
+
+  @Test
+  public void getNotesByPatternFollowsNoteChanges() {
+    Note note = new Note();
+    note.setTitle("title");
+    note.setContent("first version");
+    dbHelper.updateNote(note, true);
+    assertEquals(1, dbHelper.getNotesByPattern("first").size());
+
+    note.setContent("second version");
+    dbHelper.updateNote(note, true);
+    assertEquals(0, dbHelper.getNotesByPattern("first").size());
+    assertEquals(1, dbHelper.getNotesByPattern("second").size());
+
+    dbHelper.deleteNote(note);
+    assertEquals(0, dbHelper.getNotesByPattern("second").size());
+  }
+
+  @Test
+  public void getNotesByPatternMatchesOnlyTitleOfLockedNotes() {
+    Note note = new Note();
+    note.setTitle("locked title");
+    note.setContent("secret content");
+    note.setLocked(true);
+    dbHelper.updateNote(note, true);
+    assertEquals(1, dbHelper.getNotesByPattern("locked").size());
+    assertEquals(0, dbHelper.getNotesByPattern("secret").size());
+  }
+
+  @Test
+  public void toFtsMatchQuery() {
+    assertEquals("\"shop*\" \"list*\"", DbHelper.toFtsMatchQuery(" shop-list "));
+    assertEquals("\"caffè*\"", DbHelper.toFtsMatchQuery("caffè"));
+    assertNull(DbHelper.toFtsMatchQuery("_ %"));
+  }
+
+  @Test
+  public void getNotesLoadsAttachmentsOfEachNote() {
+    Note note1 = createNoteWithAttachments(1L, 2);
+    Note note2 = createNoteWithAttachments(2L, 0);
+    Note note3 = createNoteWithAttachments(3L, 3);
+
+    List<Note> notes = dbHelper.getNotes("", false);
+
+    assertEquals(3, notes.size());
+    for (Note note : notes) {
+      assertEquals(attachmentIds(dbHelper.getNoteAttachments(note)),
+          attachmentIds(note.getAttachmentsList()));
+    }
+    assertEquals(2, dbHelper.getNote(note1.get_id()).getAttachmentsList().size());
+    assertEquals(0, dbHelper.getNote(note2.get_id()).getAttachmentsList().size());
+    assertEquals(3, dbHelper.getNote(note3.get_id()).getAttachmentsList().size());
+  }
+
+  @Test
+  public void getNoteSummariesReadsPreviewAndFirstAttachment() {
+    Note note = createNoteWithAttachments(1L, 3);
+    note.setContent("\n" + StringUtils.repeat("a", CONTENT_SUBSTRING_LENGTH * 2));
+    dbHelper.updateNote(note, false);
+    createNoteWithAttachments(2L, 0);
+
+    List<Note> summaries = dbHelper.getNoteSummaries(" WHERE " + KEY_ID + " = 1", false);
+
+    assertEquals(1, summaries.size());
+    Note summary = summaries.get(0);
+    assertTrue(summary instanceof NoteSummary);
+    assertEquals(note.getTitle(), summary.getTitle());
+    assertEquals(StringUtils.repeat("a", CONTENT_SUBSTRING_LENGTH + 1), summary.getContent());
+    assertEquals(Collections.singletonList(100L), attachmentIds(summary.getAttachmentsList()));
+    assertEquals(note.getContent(), NotesHelper.toFullNote(summary).getContent());
+    assertTrue(dbHelper.getNoteSummaries(" WHERE " + KEY_ID + " = 2", false).get(0)
+        .getAttachmentsList().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noteSummariesCantBeSaved() {
+    createNoteWithAttachments(1L, 0);
+    dbHelper.updateNote(dbHelper.getNoteSummaries("", false).get(0), false);
+  }
+
+  @Test
+  public void indexedQueriesDoNotScanTables() {
+    assertNoTableScan("SELECT " + KEY_ATTACHMENT_ID + " FROM " + TABLE_ATTACHMENTS
+        + " WHERE " + KEY_ATTACHMENT_NOTE_ID + " = 1");
+    assertNoTableScan(dbHelper.getNotesQuery(" WHERE " + KEY_TRASHED + " = 1 ", false));
+    assertNoTableScan(dbHelper.getNoteSummariesQuery("", " WHERE " + KEY_TRASHED + " = 1 ", ""));
+    assertNoTableScan(dbHelper.getNotesQuery(" WHERE " + KEY_CATEGORY_ID + " = 1"
+        + " AND " + KEY_TRASHED + " IS NOT 1 AND " + KEY_ARCHIVED + " IS NOT 1", false));
+    assertNoTableScan(dbHelper.getNotesQuery(" WHERE " + KEY_REMINDER + " >= 1"
+        + " AND " + KEY_ARCHIVED + " IS NOT 1 AND " + KEY_TRASHED + " IS NOT 1", false));
+    assertNoTableScan("SELECT " + KEY_NOTE_TAG_NOTE_ID + " FROM " + TABLE_NOTE_TAGS
+        + " WHERE " + KEY_NOTE_TAG + " = '#tag'");
+  }
+
+  @Test
+  public void bulkOperationsSpanMoreInClauseChunks() {
+    List<Long> ids = new ArrayList<>();
+    for (long creation = 1; creation <= 700; creation++) {
+      ids.add(createNoteWithAttachments(creation, creation % 100 == 0 ? 1 : 0).get_id());
+    }
+    List<Long> processedIds = ids.subList(0, 600);
+    long lastModification = dbHelper.getNote(1L).getLastModification();
+    Category category = dbHelper.updateCategory(new Category(1L, "category", "", "0"));
+
+    dbHelper.archiveNotes(processedIds, true);
+    dbHelper.categorizeNotes(processedIds, category);
+    assertEquals(600, dbHelper.getNotesArchived().size());
+    assertEquals(600, dbHelper.getCategorizedCount(category));
+    assertEquals(lastModification, (long) dbHelper.getNote(1L).getLastModification());
+
+    dbHelper.trashNotes(processedIds, true);
+    dbHelper.categorizeNotes(processedIds, null);
+    assertEquals(600, dbHelper.getNotesTrashed().size());
+    assertEquals(0, dbHelper.getCategorizedCount(category));
+    assertEquals(700, dbHelper.getNotesById(ids).size());
+
+    dbHelper.deleteNotes(processedIds, false);
+    assertEquals(100, dbHelper.getAllNotes(false).size());
+    assertEquals(1, dbHelper.getAllAttachments().size());
+  }
+
+  @Test
+  public void emptyTrashDeletesTrashedNotesAndTheirAttachments() {
+    List<Long> trashedIds = new ArrayList<>();
+    for (long creation = 1; creation <= 4; creation++) {
+      Note note = createNoteWithAttachments(creation, 2);
+      if (creation % 2 == 0) {
+        trashedIds.add(note.get_id());
+      }
+    }
+    dbHelper.trashNotes(trashedIds, true);
+    dbHelper.getDatabase(true).execSQL("UPDATE " + TABLE_NOTES + " SET " + KEY_LOCKED
+        + " = 1 WHERE " + KEY_ID + " = 1");
+    assertFalse(dbHelper.hasLockedNotesInTrash());
+
+    assertEquals(2, dbHelper.emptyTrash());
+
+    assertEquals(2, dbHelper.getAllNotes(false).size());
+    assertTrue(dbHelper.getNotesTrashed().isEmpty());
+    assertEquals(4, dbHelper.getAllAttachments().size());
+    assertEquals(new HashSet<>(Arrays.asList("attachment0", "attachment1")),
+        dbHelper.getAttachmentsFileNames());
+    dbHelper.trashNotes(Collections.singletonList(1L), true);
+    assertTrue(dbHelper.hasLockedNotesInTrash());
+  }
+
+  @Test
+  public void getStatsAggregatesNotesAndAttachments() {
+    Note note1 = createNoteWithAttachments(1L, 2);
+    note1.setContent("first #tag content");
+    note1.setAlarm(Calendar.getInstance().getTimeInMillis() + 100_000);
+    note1.setLongitude("12.5");
+    dbHelper.updateNote(note1, false);
+    Note note2 = createNoteWithAttachments(2L, 1);
+    note2.setAlarm(1000L);
+    note2.setArchived(true);
+    dbHelper.updateNote(note2, false);
+    Note note3 = createNoteWithAttachments(3L, 0);
+    note3.setTrashed(true);
+    dbHelper.updateNote(note3, false);
+
+    Stats stats = dbHelper.getStats();
+
+    assertEquals(1, stats.getNotesActive());
+    assertEquals(1, stats.getNotesArchived());
+    assertEquals(1, stats.getNotesTrashed());
+    assertEquals(1, stats.getReminders());
+    assertEquals(1, stats.getRemindersFutures());
+    assertEquals(1, stats.getLocation());
+    assertEquals(1, stats.getTags());
+    assertEquals(3, stats.getAttachments());
+    assertEquals(3, stats.getFiles());
+    assertEquals(0, stats.getImages());
+    assertEquals(NotesHelper.getWords(note1) + NotesHelper.getWords(note2)
+        + NotesHelper.getWords(note3), stats.getWords());
+    assertEquals(NotesHelper.getChars(note1), stats.getCharsMax());
+  }
+
+  @Test
+  public void navigationCountersFollowNotesChanges() {
+    Category category = dbHelper.updateCategory(new Category(1L, "category", "", "0"));
+    List<Long> ids = new ArrayList<>();
+    for (long creation = 1; creation <= 6; creation++) {
+      Note note = createNoteWithAttachments(creation, 0);
+      note.setAlarm(creation * 1000);
+      dbHelper.updateNote(note, false);
+      ids.add(creation);
+    }
+    assertNavigationCounters(0, 0, 6, 6);
+
+    dbHelper.archiveNotes(ids.subList(0, 2), true);
+    dbHelper.trashNotes(ids.subList(1, 3), true);
+    dbHelper.categorizeNotes(ids.subList(3, 6), category);
+    assertNavigationCounters(1, 2, 3, 3);
+
+    Note note = dbHelper.getNote(4L);
+    note.setAlarm(null);
+    note.setCategory(null);
+    dbHelper.updateNote(note, false);
+    assertNavigationCounters(1, 2, 4, 2);
+
+    dbHelper.deleteNotes(ids.subList(0, 2), false);
+    dbHelper.deleteNote(5L, false);
+    assertNavigationCounters(0, 1, 2, 1);
+  }
+
+  @Test
+  public void tagsIndexFollowsNotesChanges() {
+    Note note1 = createNoteWithAttachments(1L, 0);
+    note1.setContent("#first #second");
+    dbHelper.updateNote(note1, false);
+    Note note2 = createNoteWithAttachments(2L, 0);
+    note2.setTitle("#second");
+    note2.setContent("#third");
+    dbHelper.updateNote(note2, false);
+
+    List<Tag> tags = dbHelper.getTags();
+    assertEquals(3, tags.size());
+    assertEquals("#second", tags.get(1).getText());
+    assertEquals(2, (int) tags.get(1).getCount());
+    assertEquals(1, dbHelper.getNotesByTag(new String[]{"#second", "#third"}).size());
+    assertEquals(0, dbHelper.getNotesByTag(new String[]{"#first", "#third"}).size());
+
+    note2.setContent("#first");
+    dbHelper.updateNote(note2, false);
+    assertEquals(2, dbHelper.getNotesByTag(new String[]{"#first", "#second"}).size());
+    assertEquals(0, dbHelper.getNotesByTag("#third").size());
+
+    note2.setLocked(true);
+    dbHelper.updateNote(note2, false);
+    assertEquals(2, dbHelper.getNotesByTag("#first").size());
+    assertEquals(2, dbHelper.getNotesByTag("#second").size());
+
+    dbHelper.deleteNote(1L, false);
+    dbHelper.getDatabase(true).delete(DbHelper.TABLE_NOTE_TAGS, null, null);
+    dbHelper.rebuildNotesTags();
+    assertEquals(2, dbHelper.getTags().size());
+    assertEquals("#first", dbHelper.getTags().get(0).getText());
+    assertEquals("#second", dbHelper.getTags().get(1).getText());
+
+    dbHelper.getDatabase(true).delete(DbHelper.TABLE_NOTE_TAGS, null, null);
+    dbHelper.rebuildNotesTagsIfPending();
+    assertEquals(0, dbHelper.getTags().size());
+    Prefs.edit().putBoolean(PREF_NOTE_TAGS_REBUILD_PENDING, true).commit();
+    dbHelper.rebuildNotesTagsIfPending();
+    assertEquals(2, dbHelper.getTags().size());
+    assertFalse(Prefs.getBoolean(PREF_NOTE_TAGS_REBUILD_PENDING, false));
+  }
+
+  @Test
+  public void lockedNotesContentTagsAreIndexed() {
+    Prefs.edit().putString(PREF_PASSWORD, Security.md5("password")).commit();
+    Note note = createNoteWithAttachments(1L, 0);
+    note.setContent("secret #hidden");
+    note.setLocked(true);
+    dbHelper.updateNote(note, false);
+
+    assertEquals("#hidden", dbHelper.getTags().get(0).getText());
+    assertEquals(1, dbHelper.getNotes(NoteQuery.forTags("#hidden")).size());
+
+    dbHelper.getDatabase(true).delete(DbHelper.TABLE_NOTE_TAGS, null, null);
+    dbHelper.invalidateDecryptedContents();
+    dbHelper.rebuildNotesTags();
+    assertEquals("#hidden", dbHelper.getTags().get(0).getText());
+    assertEquals(1, dbHelper.getNotes(NoteQuery.forTags("#hidden")).size());
+  }
+
+  @Test
+  public void lockedNotesDecryptedContentIsCachedUntilPasswordChanges() {
+    Prefs.edit().putString(PREF_PASSWORD, Security.md5("password")).commit();
+    Note note = createNoteWithAttachments(1L, 0);
+    note.setContent("secret");
+    note.setLocked(true);
+    dbHelper.updateNote(note, false);
+    assertEquals("secret", dbHelper.getNote(1L).getContent());
+
+    // Content saved again without changing last modification is decrypted again
+    ContentValues values = new ContentValues();
+    values.put(KEY_CONTENT, Security.encrypt("new secret", Security.md5("password")));
+    dbHelper.getDatabase(true).update(TABLE_NOTES, values, KEY_ID + " = 1", null);
+    assertEquals("new secret", dbHelper.getNote(1L).getContent());
+
+    Prefs.edit().putString(PREF_PASSWORD, Security.md5("another password")).commit();
+    assertEquals("new secret", dbHelper.getNote(1L).getContent());
+    dbHelper.invalidateDecryptedContents();
+    assertNotEquals("new secret", dbHelper.getNote(1L).getContent());
+  }
+
+  @Test
+  public void getCategorizedCountSurvivesDatabaseReopening() {
+    Category category1 = dbHelper.updateCategory(new Category(1L, "category 1", "", "0"));
+    Category category2 = dbHelper.updateCategory(new Category(2L, "category 2", "", "0"));
+    for (long creation = 1; creation <= 3; creation++) {
+      Note note = createNoteWithAttachments(creation, 0);
+      note.setCategory(creation == 1 ? category1 : category2);
+      dbHelper.updateNote(note, false);
+    }
+
+    assertEquals(1, dbHelper.getCategorizedCount(category1));
+    assertEquals(2, dbHelper.getCategorizedCount(category2));
+    dbHelper.close();
+    assertEquals(2, dbHelper.getCategorizedCount(category2));
+    assertEquals(category1.getName(), dbHelper.getCategory(1L).getName());
+  }
+
+  @Test
+  public void getNotesLastModification_matchesNoteSummaries() {
+    for (long creation = 1; creation <= 12; creation++) {
+      createNoteWithAttachments(creation, (int) (creation % 2));
+    }
+    String condition = " WHERE " + KEY_ID + " > 3";
+
+    Map<Long, Long> lastModifications = dbHelper.getNotesLastModification(condition, true);
+    List<Note> summaries = dbHelper.getNoteSummaries(condition, true);
+
+    assertEquals(summaries.size(), lastModifications.size());
+    int i = 0;
+    for (Map.Entry<Long, Long> lastModification : lastModifications.entrySet()) {
+      assertEquals(summaries.get(i).get_id(), lastModification.getKey());
+      assertEquals(summaries.get(i++).getLastModification(), lastModification.getValue());
+    }
+  }
+
+  @Test
+  public void getNoteSummariesById() {
+    for (long creation = 1; creation <= 5; creation++) {
+      createNoteWithAttachments(creation, 1);
+    }
+
+    List<Note> summaries = dbHelper.getNoteSummariesById(Arrays.asList(2L, 4L));
+
+    assertEquals(2, summaries.size());
+    for (Note summary : summaries) {
+      assertTrue(summary instanceof NoteSummary);
+      assertTrue(summary.get_id() == 2L || summary.get_id() == 4L);
+      assertEquals(1, summary.getAttachmentsList().size());
+    }
+  }
+
+  @Test
+  public void getNoteThroughput() {
+    int notesNumber = 200;
+    int lookups = 5000;
+    for (long creation = 1; creation <= notesNumber; creation++) {
+      createNoteWithAttachments(creation, (int) (creation % 3));
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < lookups; i++) {
+      long id = i % notesNumber + 1L;
+      assertEquals(id, (long) dbHelper.getNotes(" WHERE " + KEY_ID + " = " + id, true).get(0)
+          .get_id());
+    }
+    long concatenatedElapsed = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int i = 0; i < lookups; i++) {
+      long id = i % notesNumber + 1L;
+      assertEquals(id, (long) dbHelper.getNote(id).get_id());
+    }
+    long boundElapsed = System.nanoTime() - start;
+
+    LogDelegate.i("getNote(id) throughput: concatenated " + opsPerSecond(lookups,
+        concatenatedElapsed) + " ops/s, bound " + opsPerSecond(lookups, boundElapsed) + " ops/s");
+  }
+
+  @Test
+  public void loadAttachments_batchesQueries() {
+    int notesNumber = 1000;
+    int rounds = 20;
+    for (long creation = 1; creation <= notesNumber; creation++) {
+      createNoteWithAttachments(creation, (int) (creation % 3));
+    }
+    List<Note> notes = dbHelper.getNotes("", false);
+    List<List<Long>> perNoteAttachmentsIds = new ArrayList<>();
+    for (Note note : notes) {
+      perNoteAttachmentsIds.add(attachmentIds(dbHelper.getNoteAttachments(note)));
+    }
+
+    AtomicInteger queries = new AtomicInteger();
+    DbHelper countingDbHelper = new DbHelper(testContext, (db, driver, editTable, query) -> {
+      queries.incrementAndGet();
+      return new SQLiteCursor(driver, editTable, query);
+    });
+    try {
+      // Queries run opening the database aren't counted
+      countingDbHelper.getDatabase();
+      queries.set(0);
+      countingDbHelper.loadAttachments(notes);
+      int chunkSize = DbHelper.QUERY_IN_CLAUSE_CHUNK_SIZE;
+      assertEquals((notesNumber + chunkSize - 1) / chunkSize, queries.get());
+    } finally {
+      countingDbHelper.close();
+    }
+    for (int i = 0; i < notes.size(); i++) {
+      assertEquals(perNoteAttachmentsIds.get(i), attachmentIds(notes.get(i).getAttachmentsList()));
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      for (Note note : notes) {
+        note.setAttachmentsList(dbHelper.getNoteAttachments(note));
+      }
+    }
+    long perNoteElapsed = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      dbHelper.loadAttachments(notes);
+    }
+    long batchedElapsed = System.nanoTime() - start;
+    LogDelegate.i("loadAttachments throughput for " + notesNumber + " notes: per note "
+        + opsPerSecond(rounds, perNoteElapsed) + " ops/s, batched "
+        + opsPerSecond(rounds, batchedElapsed) + " ops/s");
+  }
+
+  private long opsPerSecond(int operations, long elapsedNanos) {
+    return operations * 1_000_000_000L / Math.max(elapsedNanos, 1);
+  }
+
+  private void assertNavigationCounters(int archived, int trashed, int uncategorized,
+      int reminders) {
+    assertEquals(archived, dbHelper.getNavigationCounter(DbHelper.KEY_COUNTER_ARCHIVED));
+    assertEquals(trashed, dbHelper.getNavigationCounter(DbHelper.KEY_COUNTER_TRASHED));
+    assertEquals(uncategorized,
+        dbHelper.getNavigationCounter(DbHelper.KEY_COUNTER_UNCATEGORIZED));
+    assertEquals(reminders, dbHelper.getNavigationCounter(DbHelper.KEY_COUNTER_REMINDERS));
+  }
+
+  private Note createNoteWithAttachments(long creation, int attachmentsNumber) {
+    Note note = new Note();
+    note.setCreation(creation);
+    note.setTitle("note " + creation);
+    note.setContent("content");
+    for (int i = 0; i < attachmentsNumber; i++) {
+      note.addAttachment(new Attachment(creation * 100 + i, Uri.parse("file:///attachment" + i),
+          "attachment" + i, 0, 0, MIME_TYPE_FILES));
+    }
+    return dbHelper.updateNote(note, true);
+  }
+
+  private List<Long> attachmentIds(List<Attachment> attachments) {
+    List<Long> ids = new ArrayList<>();
+    for (Attachment attachment : attachments) {
+      ids.add(attachment.getId());
+    }
+    return ids;
+  }
+
+  private void assertNoTableScan(String query) {
+    for (String detail : explainQueryPlan(query)) {
+      assertFalse("Full scan detected for query: " + query + "\n" + detail,
+          detail.matches("SCAN (TABLE )?(" + TABLE_NOTES + "|" + TABLE_ATTACHMENTS + ")\\b.*"));
+    }
+  }
+
+  private List<String> explainQueryPlan(String query) {
+    List<String> details = new ArrayList<>();
+    try (Cursor cursor = dbHelper.getDatabase().rawQuery("EXPLAIN QUERY PLAN " + query, null)) {
+      int detailIndex = cursor.getColumnIndexOrThrow("detail");
+      while (cursor.moveToNext()) {
+        details.add(cursor.getString(detailIndex));
+      }
+    }
+    return details;
+  }
+
 }
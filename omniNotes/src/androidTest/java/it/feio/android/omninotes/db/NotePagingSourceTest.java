@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.db.DbHelper.KEY_CREATION;
+import static it.feio.android.omninotes.db.DbHelper.KEY_LAST_MODIFICATION;
+import static it.feio.android.omninotes.db.DbHelper.KEY_REMINDER;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TITLE;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SORTING_COLUMN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.pixplicity.easyprefs.library.Prefs;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class NotePagingSourceTest extends BaseAndroidTestCase {
+
+  private static final int NOTES_NUMBER = NotePagingSource.PAGE_SIZE * 2 + 7;
+
+  @Test
+  public void pagesFollowNotesOrder() {
+    createNotes();
+    for (String sortColumn : new String[]{KEY_TITLE, KEY_CREATION, KEY_LAST_MODIFICATION,
+        KEY_REMINDER}) {
+      Prefs.putString(PREF_SORTING_COLUMN, sortColumn);
+      List<Long> pagedIds = loadAllPages(new NotePagingSource(NoteQuery.forAllNotes()));
+
+      assertEquals(sortColumn, NOTES_NUMBER, pagedIds.size());
+      assertEquals(sortColumn, NOTES_NUMBER, new HashSet<>(pagedIds).size());
+      assertEquals(sortColumn, sortKeys(ids(dbHelper.getNotes("", true))), sortKeys(pagedIds));
+    }
+  }
+
+  @Test
+  public void firstPageSize() {
+    createNotes();
+    NotePagingSource pagingSource = new NotePagingSource(NoteQuery.forAllNotes())
+        .setFirstPageSize(NotePagingSource.PAGE_SIZE + 1);
+
+    assertEquals(NotePagingSource.PAGE_SIZE + 1, pagingSource.loadFirstPage().size());
+    assertEquals(NOTES_NUMBER - NotePagingSource.PAGE_SIZE - 1,
+        pagingSource.loadRemaining().size());
+    assertTrue(pagingSource.isEndReached());
+  }
+
+  @Test
+  public void filteredPagesAreFilled() {
+    createNotes();
+    NotePagingSource pagingSource = new NotePagingSource(NoteQuery.forTags("#even"));
+
+    List<Note> firstPage = pagingSource.loadFirstPage();
+
+    assertEquals(NotePagingSource.PAGE_SIZE, firstPage.size());
+    for (Note note : firstPage) {
+      assertEquals(0, note.getCreation() % 2);
+    }
+  }
+
+  /**
+   * Titles and reminders are repeated to check ties and NULL values across pages boundaries
+   */
+  private void createNotes() {
+    for (int i = 1; i <= NOTES_NUMBER; i++) {
+      Note note = new Note();
+      note.setCreation((long) i);
+      note.setTitle("Title " + (i % 5));
+      note.setContent("content " + i + (i % 2 == 0 ? " #even" : " #evening"));
+      if (i % 3 != 0) {
+        note.setAlarm((long) (i % 4) * 1000);
+      }
+      dbHelper.updateNote(note, true);
+    }
+  }
+
+  private List<Long> loadAllPages(NotePagingSource pagingSource) {
+    List<Note> notes = new ArrayList<>(pagingSource.loadFirstPage());
+    while (!pagingSource.isEndReached()) {
+      notes.addAll(pagingSource.loadNextPage());
+    }
+    return ids(notes);
+  }
+
+  private List<Long> ids(List<Note> notes) {
+    List<Long> ids = new ArrayList<>();
+    for (Note note : notes) {
+      ids.add(note.getCreation());
+    }
+    return ids;
+  }
+
+  /**
+   * Notes sharing the sorting value can be returned in any order by the unpaged query, so only
+   * the sorting values sequence is compared
+   */
+  private List<String> sortKeys(List<Long> ids) {
+    List<String> sortKeys = new ArrayList<>();
+    for (Long id : ids) {
+      Note note = dbHelper.getNote(id);
+      switch (Prefs.getString(PREF_SORTING_COLUMN, KEY_TITLE)) {
+        case KEY_TITLE:
+          sortKeys.add((note.getTitle() + note.getContent()).toLowerCase());
+          break;
+        case KEY_REMINDER:
+          sortKeys.add(String.valueOf(note.getAlarm()));
+          break;
+        case KEY_LAST_MODIFICATION:
+          sortKeys.add(String.valueOf(note.getLastModification()));
+          break;
+        default:
+          sortKeys.add(String.valueOf(id));
+      }
+    }
+    return sortKeys;
+  }
+
+}
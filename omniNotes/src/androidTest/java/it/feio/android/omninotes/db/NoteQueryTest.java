@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.Navigation;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class NoteQueryTest extends BaseAndroidTestCase {
+
+  @Test
+  public void sameShapeQueriesShareSql() {
+    NoteQuery apple = NoteQuery.forPattern("apple");
+    NoteQuery orange = NoteQuery.forPattern("orange");
+
+    assertEquals(apple.getCondition(), orange.getCondition());
+    assertNotEquals(apple.getArgs()[apple.getArgs().length - 1],
+        orange.getArgs()[orange.getArgs().length - 1]);
+    assertEquals(NoteQuery.forCategory(1L).getCondition(),
+        NoteQuery.forCategory(2L).getCondition());
+  }
+
+  @Test
+  public void valuesAreBoundNotConcatenated() {
+    NoteQuery noteQuery = NoteQuery.forTags("#it's");
+
+    assertFalse(noteQuery.getCondition().contains("#it's"));
+    assertArrayEquals(new String[]{"#it's"}, noteQuery.getArgs());
+  }
+
+  @Test
+  public void allNotesHaveNoCondition() {
+    assertEquals("", NoteQuery.forAllNotes().getCondition());
+    assertEquals(0, NoteQuery.forAllNotes().getArgs().length);
+  }
+
+  @Test
+  public void tagsWithQuotesAreFound() {
+    Note note = new Note();
+    note.setTitle("title");
+    note.setContent("content #it's");
+    dbHelper.updateNote(note, true);
+    String tag = dbHelper.getTags().get(0).getText();
+
+    assertEquals(1, dbHelper.getNotes(NoteQuery.forTags(tag)).size());
+  }
+
+  @Test
+  public void navigationQueries() {
+    Note note = new Note();
+    note.setTitle("archived");
+    note.setArchived(true);
+    dbHelper.updateNote(note, true);
+
+    assertEquals(0, dbHelper.getNotes(NoteQuery.forNavigation(Navigation.NOTES)).size());
+    assertEquals(1, dbHelper.getNotes(NoteQuery.forNavigation(Navigation.ARCHIVE)).size());
+    assertEquals(1, dbHelper.getNotes(NoteQuery.forAllNotes()).size());
+  }
+
+  @Test
+  public void remindersSortingFollowsQueryNavigation() {
+    String remindersSorting = DbHelper.getSortExpression(DbHelper.KEY_REMINDER);
+
+    assertEquals(remindersSorting,
+        NoteQuery.forNavigation(Navigation.REMINDERS).getSortExpression());
+    assertNotEquals(remindersSorting,
+        NoteQuery.forNavigation(Navigation.ARCHIVE).getSortExpression());
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Note;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class AttachmentStoreTest extends BaseAndroidTestCase {
+
+  @Test
+  public void checkUtilityClassWellDefined() throws Exception {
+    assertUtilityClassWellDefined(AttachmentStore.class);
+  }
+
+  @Test
+  public void store_sharesIdenticalFiles() throws IOException {
+    File first = AttachmentStore.store(stream("same content"), ".txt");
+    File second = AttachmentStore.store(stream("same content"), ".txt");
+    File other = AttachmentStore.store(stream("other content"), ".txt");
+
+    assertEquals(first, second);
+    assertNotEquals(first, other);
+    assertTrue(AttachmentStore.isStored(first));
+    assertEquals(AttachmentStore.hash(first) + ".txt", first.getName());
+    assertEquals("same content", FileUtils.readFileToString(first, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void store_returnsAlreadyStoredFile() throws IOException {
+    File stored = AttachmentStore.store(stream("merged content"), ".txt");
+
+    assertEquals(stored, AttachmentStore.store(testContext, Uri.fromFile(stored), ".txt"));
+    assertEquals(stored, AttachmentStore.store(stored, ".txt"));
+    assertTrue(stored.exists());
+  }
+
+  @Test
+  public void release_keepsReferencedFiles() throws IOException {
+    File stored = AttachmentStore.store(stream("shared content"), ".txt");
+    Note note = new Note();
+    note.setCreation(1L);
+    note.addAttachment(new Attachment(Uri.fromFile(stored), "text/plain"));
+    dbHelper.updateNote(note, false);
+    Attachment discarded = new Attachment(Uri.fromFile(stored), "text/plain");
+
+    assertFalse(AttachmentStore.release(testContext, discarded));
+    assertTrue(stored.exists());
+
+    dbHelper.deleteNote(note);
+    assertTrue(stored.setLastModified(stored.lastModified() - TimeUnit.DAYS.toMillis(2)));
+
+    assertTrue(AttachmentStore.release(testContext, discarded));
+    assertFalse(stored.exists());
+  }
+
+  @Test
+  public void release_keepsFilesReusedByUnsavedNotes() throws IOException {
+    File stored = AttachmentStore.store(stream("reused content"), ".txt");
+    Note note = new Note();
+    note.setCreation(1L);
+    note.addAttachment(new Attachment(Uri.fromFile(stored), "text/plain"));
+    dbHelper.updateNote(note, false);
+    assertTrue(stored.setLastModified(stored.lastModified() - TimeUnit.DAYS.toMillis(2)));
+
+    // Another note, not saved yet, attaches the same content
+    assertEquals(stored, AttachmentStore.store(stream("reused content"), ".txt"));
+    dbHelper.deleteNote(note);
+
+    assertFalse(AttachmentStore.release(testContext, note.getAttachmentsList().get(0)));
+    assertTrue(stored.exists());
+  }
+
+  private ByteArrayInputStream stream(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
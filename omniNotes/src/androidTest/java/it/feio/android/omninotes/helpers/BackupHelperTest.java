@@ -22,6 +22,7 @@ import static org.junit.Assert.*;
 import static rx.Observable.from;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.lazygeniouz.dfc.file.DocumentFileCompat;
 import com.pixplicity.easyprefs.library.Prefs;
@@ -29,13 +30,19 @@ import it.feio.android.omninotes.BaseAndroidTestCase;
 import it.feio.android.omninotes.exceptions.BackupException;
 import it.feio.android.omninotes.exceptions.checked.BackupAttachmentException;
 import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.utils.Constants;
 import it.feio.android.omninotes.utils.Security;
 import it.feio.android.omninotes.utils.StorageHelper;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -131,6 +138,163 @@ public class BackupHelperTest extends BaseAndroidTestCase {
     );
   }
 
+  @Test
+  public void exportAttachments_partialFailure() {
+    Note note = createTestNote("test title", "test content", 3);
+    List<Attachment> attachments = note.getAttachmentsList();
+    assertTrue(new File(attachments.get(1).getUri().getPath()).delete());
+
+    boolean result = BackupHelper.exportAttachments(null, attachmentsBackupDir, attachments,
+        null);
+
+    assertFalse(result);
+    assertNotNull(attachmentsBackupDir.findFile(attachments.get(0).getUri().getLastPathSegment()));
+    assertNotNull(attachmentsBackupDir.findFile(attachments.get(2).getUri().getLastPathSegment()));
+  }
+
+  @Test
+  public void exportIncrementally_writesOnlyChangedNotes() throws IOException {
+    var unchangedNote = createDistinctTestNote("unchanged", 0);
+    var changedNote = createDistinctTestNote("changed", 0);
+    var deletedNote = createDistinctTestNote("deleted", 0);
+    var backupFolder = Files.createTempDirectory("testBackupFolder").toFile();
+    var backupDir = DocumentFileCompat.Companion.fromFile(testContext, backupFolder);
+    BackupHelper.exportIncrementally(backupDir, null);
+    var unchangedNoteFile = new File(backupFolder, unchangedNote.get_id() + ".json");
+    FileUtils.write(unchangedNoteFile, "untouched");
+
+    changedNote.setTitle("edited");
+    changedNote.setLastModification(changedNote.getLastModification() + 1);
+    dbHelper.updateNote(changedNote, false);
+    dbHelper.deleteNote(deletedNote);
+    BackupHelper.exportIncrementally(backupDir, null);
+
+    assertEquals("untouched", FileUtils.readFileToString(unchangedNoteFile));
+    Note exportedNote = new Note();
+    exportedNote.buildFromJson(FileUtils.readFileToString(
+        new File(backupFolder, changedNote.get_id() + ".json")));
+    assertEquals("edited", exportedNote.getTitle());
+    assertFalse(new File(backupFolder, deletedNote.get_id() + ".json").exists());
+    assertTrue(new File(backupFolder, "backup_manifest.json").exists());
+  }
+
+  @Test
+  public void exportIncrementally_rewritesTrashedNotes() throws IOException {
+    var note = createDistinctTestNote("trashed", 0);
+    var backupFolder = Files.createTempDirectory("testBackupFolder").toFile();
+    var backupDir = DocumentFileCompat.Companion.fromFile(testContext, backupFolder);
+    BackupHelper.exportIncrementally(backupDir, null);
+
+    dbHelper.trashNotes(Collections.singletonList(note.get_id()), true);
+    BackupHelper.exportIncrementally(backupDir, null);
+
+    Note exportedNote = new Note();
+    exportedNote.buildFromJson(FileUtils.readFileToString(
+        new File(backupFolder, note.get_id() + ".json")));
+    assertEquals(note.getLastModification(), exportedNote.getLastModification());
+    assertTrue(exportedNote.isTrashed());
+  }
+
+  @Test
+  public void exportIncrementally_copiesOnlyNewAttachments() throws IOException {
+    var note = createDistinctTestNote("note", 1);
+    var backupFolder = Files.createTempDirectory("testBackupFolder").toFile();
+    var backupDir = DocumentFileCompat.Companion.fromFile(testContext, backupFolder);
+    var attachmentsBackupFolder = new File(backupFolder, StorageHelper.getAttachmentDir().getName());
+    BackupHelper.exportIncrementally(backupDir, null);
+    var attachmentBackup = new File(attachmentsBackupFolder,
+        note.getAttachmentsList().get(0).getUri().getLastPathSegment());
+    FileUtils.write(attachmentBackup, "untouched");
+
+    var newNote = createDistinctTestNote("new note", 1);
+    BackupHelper.exportIncrementally(backupDir, null);
+
+    assertEquals("untouched", FileUtils.readFileToString(attachmentBackup));
+    var newAttachment = newNote.getAttachmentsList().get(0);
+    assertEquals(FileUtils.readFileToString(new File(newAttachment.getUri().getPath())),
+        FileUtils.readFileToString(
+            new File(attachmentsBackupFolder, newAttachment.getUri().getLastPathSegment())));
+
+    dbHelper.deleteNote(note);
+    BackupHelper.exportIncrementally(backupDir, null);
+
+    assertFalse(attachmentBackup.exists());
+  }
+
+  @Test
+  public void exportIncrementally_rewritesLockedNotesWhenPasswordChanges() throws IOException {
+    Prefs.putString(PREF_PASSWORD, Security.md5("password"));
+    var note = createTestNote("locked", "secret content", 0);
+    note.setLocked(true);
+    dbHelper.updateNote(note, false);
+    var backupFolder = Files.createTempDirectory("testBackupFolder").toFile();
+    var backupDir = DocumentFileCompat.Companion.fromFile(testContext, backupFolder);
+    BackupHelper.exportIncrementally(backupDir, null);
+
+    LockedNotesHelper.rekey(Security.md5("newPassword"), null);
+    BackupHelper.exportIncrementally(backupDir, null);
+
+    var importedNote = BackupHelper.importNote(DocumentFileCompat.Companion.fromFile(testContext,
+        new File(backupFolder, note.get_id() + ".json")));
+    assertNotNull(importedNote);
+    assertEquals("secret content", importedNote.getContent());
+  }
+
+  @Test
+  public void exportArchive_importArchive() throws IOException {
+    var note = createDistinctTestNote("note with attachment", 1);
+    var otherNote = createTestNote("other note", "multiline\ncontent", 0);
+    var attachmentFile = new File(note.getAttachmentsList().get(0).getUri().getPath());
+    var attachmentContent = FileUtils.readFileToString(attachmentFile);
+    var archive = File.createTempFile("backup", BackupHelper.ARCHIVE_EXTENSION);
+    try (var archiveStream = new FileOutputStream(archive)) {
+      BackupHelper.exportArchive(archiveStream, null);
+    }
+    dbHelper.deleteNote(note);
+    dbHelper.deleteNote(otherNote);
+
+    int imported;
+    try (var archiveStream = new FileInputStream(archive)) {
+      imported = BackupHelper.importArchive(archiveStream, null);
+    }
+
+    assertEquals(2, imported);
+    assertEquals("note with attachment", dbHelper.getNote(note.get_id()).getTitle());
+    assertEquals("multiline\ncontent", dbHelper.getNote(otherNote.get_id()).getContent());
+    var restoredAttachment = new File(StorageHelper.getAttachmentDir(),
+        note.getAttachmentsList().get(0).getUri().getLastPathSegment());
+    assertEquals(attachmentContent, FileUtils.readFileToString(restoredAttachment));
+  }
+
+  @Test
+  public void importNotes_inBatches() throws IOException {
+    var category = new Category(1L, "category", "description", "-16777216");
+    dbHelper.updateCategory(category);
+    List<Note> notes = new ArrayList<>();
+    for (int i = 0; i < NotesImporter.BATCH_SIZE * 2 + 10; i++) {
+      Note note = new Note();
+      note.setCreation(1_600_000_000_000L + i);
+      note.setLastModification(1_600_000_000_000L + i);
+      note.setTitle("note " + i);
+      note.setContent("content " + i);
+      note.setCategory(category);
+      notes.add(note);
+    }
+    dbHelper.updateNotes(notes, false);
+    var backupDir = DocumentFileCompat.Companion.fromFile(testContext,
+        Files.createTempDirectory("testBackupFolder").toFile());
+    BackupHelper.exportNotes(backupDir);
+    dbHelper.deleteNotes(from(notes).map(Note::get_id).toList().toBlocking().single(), false);
+    dbHelper.deleteCategory(category);
+
+    int imported = BackupHelper.importNotes(backupDir);
+
+    assertEquals(notes.size(), imported);
+    assertEquals(notes.size(), dbHelper.getAllNotes(false).size());
+    assertEquals(1, dbHelper.getCategories().size());
+    assertEquals("note 7", dbHelper.getNote(notes.get(7).get_id()).getTitle());
+  }
+
   @Test
   public void importNote() throws IOException {
     var note = createTestNote("test title", "test content", 0);
@@ -192,12 +356,20 @@ public class BackupHelperTest extends BaseAndroidTestCase {
   public void importAttachment() throws BackupAttachmentException {
     Attachment attachment = createTestAttachmentBackup();
 
-    BackupHelper.importAttachment(attachmentsBackupDir.listFiles(), StorageHelper.getAttachmentDir(), attachment);
+    var backupedAttachments = from(attachmentsBackupDir.listFiles())
+        .toMap(DocumentFileCompat::getName).toBlocking().single();
+    BackupHelper.importAttachment(backupedAttachments, StorageHelper.getAttachmentDir(), attachment);
     LogDelegate.i("checking " + attachment.getUri().getPath());
 
     assertTrue(new File(attachment.getUri().getPath()).exists());
   }
 
+  private Note createDistinctTestNote(String title, int attachmentsNumber) {
+    // Notes IDs are creation timestamps, so they must be created in different milliseconds
+    SystemClock.sleep(1);
+    return createTestNote(title, "content", attachmentsNumber);
+  }
+
   private Attachment createTestAttachmentBackup() {
     var testAttachment = attachmentsBackupDir.createFile("", "testAttachment");
     if (!testAttachment.exists() || !testAttachment.canRead()) {
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_REKEY_CHECK;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_REKEY_SOURCE;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_REKEY_TARGET;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.Security;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class LockedNotesHelperTest extends BaseAndroidTestCase {
+
+  private static final String OLD_PASSWORD = Security.md5("old password");
+  private static final String NEW_PASSWORD = Security.md5("new password");
+  private static final int NOTES_NUMBER = 30;
+
+
+  @Before
+  public void setUp() {
+    prefs.edit().putString(PREF_PASSWORD, OLD_PASSWORD).commit();
+    for (int i = 1; i <= NOTES_NUMBER; i++) {
+      Note note = new Note();
+      note.setCreation((long) i);
+      note.setTitle("title " + i);
+      note.setContent("content #tag" + i);
+      note.setLocked(i % 3 != 0);
+      dbHelper.updateNote(note, false);
+    }
+  }
+
+  @Test
+  public void checkUtilityClassWellDefined() throws Exception {
+    assertUtilityClassWellDefined(LockedNotesHelper.class);
+  }
+
+  @Test
+  public void rekeyEncryptsLockedNotesWithNewPassword() {
+    List<Integer> progress = new ArrayList<>();
+    int converted = LockedNotesHelper.rekey(NEW_PASSWORD, (done, total) -> progress.add(done));
+
+    assertEquals(20, converted);
+    assertEquals(20, progress.size());
+    assertEquals(NEW_PASSWORD, prefs.getString(PREF_PASSWORD, null));
+    assertEquals("content #tag1",
+        Security.decrypt(dbHelper.getStoredContent(1L), NEW_PASSWORD));
+    assertEquals("content #tag3", dbHelper.getStoredContent(3L));
+    assertNotesReadable();
+    assertFalse(prefs.contains(PREF_PASSWORD_REKEY_TARGET));
+  }
+
+  @Test
+  public void rekeyConvertsNotesSavedWhileConverting() {
+    int converted = LockedNotesHelper.rekey(NEW_PASSWORD, (done, total) -> {
+      if (done == 1) {
+        Note note = dbHelper.getNote(1L);
+        note.setContent("edited #tag1");
+        dbHelper.updateNote(note, false);
+        note = dbHelper.getNote(3L);
+        note.setLocked(true);
+        dbHelper.updateNote(note, false);
+      }
+    });
+
+    assertEquals(21, converted);
+    assertEquals("edited #tag1", Security.decrypt(dbHelper.getStoredContent(1L), NEW_PASSWORD));
+    assertEquals("content #tag3", Security.decrypt(dbHelper.getStoredContent(3L), NEW_PASSWORD));
+    assertEquals("content #tag2", dbHelper.getNote(2L).getContent());
+  }
+
+  @Test
+  public void rekeyWithoutPasswordUnlocksNotes() {
+    LockedNotesHelper.rekey(null, null);
+
+    assertNull(prefs.getString(PREF_PASSWORD, null));
+    assertEquals(0, dbHelper.getNotesWithLock(true).size());
+    assertEquals("content #tag1", dbHelper.getStoredContent(1L));
+    assertEquals(1, dbHelper.getNotesByTag("#tag1").size());
+  }
+
+  @Test
+  public void resumesConversionNotCommitted() {
+    prefs.edit().putString(PREF_PASSWORD_REKEY_TARGET, NEW_PASSWORD)
+        .putString(PREF_PASSWORD_REKEY_CHECK, "1:" + Security.md5("not committed")).commit();
+
+    assertTrue(LockedNotesHelper.resumePendingRekey());
+
+    assertEquals(NEW_PASSWORD, prefs.getString(PREF_PASSWORD, null));
+    assertNotesReadable();
+    assertFalse(LockedNotesHelper.resumePendingRekey());
+  }
+
+  @Test
+  public void resumesConversionWithPasswordStoredButNotCommitted() {
+    prefs.edit().putString(PREF_PASSWORD, NEW_PASSWORD)
+        .putString(PREF_PASSWORD_REKEY_SOURCE, OLD_PASSWORD)
+        .putString(PREF_PASSWORD_REKEY_TARGET, NEW_PASSWORD)
+        .putString(PREF_PASSWORD_REKEY_CHECK, "1:" + Security.md5("not committed")).commit();
+
+    assertTrue(LockedNotesHelper.resumePendingRekey());
+
+    assertEquals(NEW_PASSWORD, prefs.getString(PREF_PASSWORD, null));
+    assertFalse(prefs.contains(PREF_PASSWORD_REKEY_SOURCE));
+    assertNotesReadable();
+  }
+
+  @Test
+  public void resumesConversionAlreadyCommitted() {
+    Map<Long, String> contents = new HashMap<>();
+    for (Map.Entry<Long, String> content : dbHelper.getLockedNotesContents().entrySet()) {
+      contents.put(content.getKey(), Security.encrypt(
+          Security.decrypt(content.getValue(), OLD_PASSWORD), NEW_PASSWORD));
+    }
+    dbHelper.updateNotesContents(contents, true);
+    prefs.edit().putString(PREF_PASSWORD_REKEY_TARGET, NEW_PASSWORD)
+        .putString(PREF_PASSWORD_REKEY_CHECK, "1:" + Security.md5(contents.get(1L))).commit();
+
+    assertTrue(LockedNotesHelper.resumePendingRekey());
+
+    assertEquals(NEW_PASSWORD, prefs.getString(PREF_PASSWORD, null));
+    assertNotesReadable();
+  }
+
+  private void assertNotesReadable() {
+    for (long i = 1; i <= NOTES_NUMBER; i++) {
+      assertEquals("content #tag" + i, dbHelper.getNote(i).getContent());
+    }
+  }
+
+}
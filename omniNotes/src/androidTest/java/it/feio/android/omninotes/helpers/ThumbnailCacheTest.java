@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.utils.ConstantsBase;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailCacheTest extends BaseAndroidTestCase {
+
+  private File attachmentFile;
+  private Attachment attachment;
+  private Bitmap bitmap;
+
+  @Before
+  public void setUp() throws IOException {
+    attachmentFile = File.createTempFile("thumbnailTest", ".jpg");
+    attachment = new Attachment(Uri.fromFile(attachmentFile), ConstantsBase.MIME_TYPE_IMAGE);
+    bitmap = Bitmap.createBitmap(40, 30, Config.ARGB_8888);
+    attachmentFile.setLastModified(System.currentTimeMillis() - 10000);
+  }
+
+  @Test
+  public void checkUtilityClassWellDefined() throws Exception {
+    assertUtilityClassWellDefined(ThumbnailCache.class);
+  }
+
+  @Test
+  public void putAndGet() {
+    assertNull(ThumbnailCache.get(testContext, attachment, 40, 30));
+
+    ThumbnailCache.put(testContext, attachment, 40, 30, bitmap);
+
+    Bitmap cached = ThumbnailCache.get(testContext, attachment, 40, 30);
+    assertNotNull(cached);
+    assertEquals(40, cached.getWidth());
+    assertEquals(30, cached.getHeight());
+    assertNull(ThumbnailCache.get(testContext, attachment, 80, 80));
+  }
+
+  @Test
+  public void get_discardsThumbnailOlderThanAttachment() {
+    ThumbnailCache.put(testContext, attachment, 40, 30, bitmap);
+    ThumbnailCache.getFile(testContext, attachment, 40, 30)
+        .setLastModified(System.currentTimeMillis() - 20000);
+
+    assertNull(ThumbnailCache.get(testContext, attachment, 40, 30));
+    assertFalse(ThumbnailCache.getFile(testContext, attachment, 40, 30).exists());
+  }
+
+  @Test
+  public void invalidate() {
+    ThumbnailCache.put(testContext, attachment, 40, 30, bitmap);
+    ThumbnailCache.put(testContext, attachment, 80, 80, bitmap);
+
+    ThumbnailCache.invalidate(testContext, attachment);
+
+    assertFalse(ThumbnailCache.getFile(testContext, attachment, 40, 30).exists());
+    assertFalse(ThumbnailCache.getFile(testContext, attachment, 80, 80).exists());
+  }
+
+  @Test
+  public void deleteOrphans() {
+    ThumbnailCache.put(testContext, attachment, 40, 30, bitmap);
+    File thumbnail = ThumbnailCache.getFile(testContext, attachment, 40, 30);
+
+    ThumbnailCache.deleteOrphans(testContext, attachmentFile.getParentFile());
+    assertTrue(thumbnail.exists());
+
+    assertTrue(attachmentFile.delete());
+    ThumbnailCache.deleteOrphans(testContext, attachmentFile.getParentFile());
+    assertFalse(thumbnail.exists());
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class NoteJsonWriterTest extends BaseAndroidTestCase {
+
+  @Test
+  public void notesAreStreamedOnePerLine() throws IOException {
+    List<Note> notes = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      notes.add(getFullNote(i));
+    }
+
+    StringWriter out = new StringWriter();
+    NoteJsonWriter writer = new NoteJsonWriter(out);
+    for (Note note : notes) {
+      writer.write(note);
+    }
+    writer.flush();
+
+    String[] lines = out.toString().split("\n");
+    assertEquals(notes.size(), lines.length);
+    NoteJsonReader reader = new NoteJsonReader(new StringReader(out.toString()));
+    for (Note note : notes) {
+      assertTrue(reader.hasNext());
+      assertNotesEquals(note, reader.next());
+    }
+    assertFalse(reader.hasNext());
+  }
+
+  @Test
+  public void streamedNoteIsReadAsWholeSerializedOne() throws IOException {
+    Note note = getFullNote(1);
+    StringWriter out = new StringWriter();
+    new NoteJsonWriter(out).write(note);
+
+    Note readNote = new Note();
+    readNote.buildFromJson(out.toString());
+
+    assertNotesEquals(note, readNote);
+  }
+
+  @Test
+  public void wholeSerializedNoteIsStreamed() throws IOException {
+    Note note = getFullNote(1);
+
+    Note readNote = new NoteJsonReader(new StringReader(note.toJSON())).next();
+
+    assertNotesEquals(note, readNote);
+  }
+
+  @Test
+  public void nullValuesAreOmitted() throws IOException {
+    Note note = new Note();
+    note.setCreation(1L);
+    StringWriter out = new StringWriter();
+    new NoteJsonWriter(out).write(note);
+
+    assertFalse(out.toString().contains("null"));
+    Note readNote = new NoteJsonReader(new StringReader(out.toString())).next();
+    assertEquals(note.getCreation(), readNote.getCreation());
+    assertEquals(null, readNote.getTitle());
+    assertEquals(null, readNote.getCategory());
+  }
+
+  private Note getFullNote(int index) {
+    Note note = new Note();
+    note.setCreation(1_600_000_000_000L + index);
+    note.setLastModification(1_600_000_000_001L + index);
+    note.setTitle("Title \"" + index + "\"");
+    note.setContent("Content\nwith many lines\tand unicode è中 😀 " + index);
+    note.setArchived(index % 2 == 0);
+    note.setTrashed(false);
+    note.setAlarm(String.valueOf(1_700_000_000_000L + index));
+    note.setRecurrenceRule("FREQ=DAILY");
+    note.setLatitude(45.4642);
+    note.setLongitude(9.19);
+    note.setAddress("Milan");
+    note.setLocked(index % 3 == 0);
+    note.setChecklist(false);
+    note.setCategory(new Category(1L, "Category", "Description", "-16777216"));
+    ArrayList<Attachment> attachments = new ArrayList<>();
+    attachments.add(new Attachment(index, Uri.parse("file:///attachments/" + index + ".jpg"),
+        "image" + index, 1024, 0, "image/jpeg"));
+    note.setAttachmentsList(attachments);
+    return note;
+  }
+
+  private void assertNotesEquals(Note expected, Note actual) {
+    assertEquals(expected.getCreation(), actual.getCreation());
+    assertEquals(expected.getLastModification(), actual.getLastModification());
+    assertEquals(expected.getTitle(), actual.getTitle());
+    assertEquals(expected.getContent(), actual.getContent());
+    assertEquals(expected.isArchived(), actual.isArchived());
+    assertEquals(expected.isTrashed(), actual.isTrashed());
+    assertEquals(expected.getAlarm(), actual.getAlarm());
+    assertEquals(expected.getRecurrenceRule(), actual.getRecurrenceRule());
+    assertEquals(expected.getLatitude(), actual.getLatitude());
+    assertEquals(expected.getLongitude(), actual.getLongitude());
+    assertEquals(expected.getAddress(), actual.getAddress());
+    assertEquals(expected.isLocked(), actual.isLocked());
+    assertEquals(expected.isChecklist(), actual.isChecklist());
+    assertEquals(expected.getCategory().getId(), actual.getCategory().getId());
+    assertEquals(expected.getCategory().getName(), actual.getCategory().getName());
+    assertEquals(expected.getCategory().getColor(), actual.getCategory().getColor());
+    assertEquals(expected.getAttachmentsList().size(), actual.getAttachmentsList().size());
+    Attachment expectedAttachment = expected.getAttachmentsList().get(0);
+    Attachment actualAttachment = actual.getAttachmentsList().get(0);
+    assertEquals(expectedAttachment.getId(), actualAttachment.getId());
+    assertEquals(expectedAttachment.getUri(), actualAttachment.getUri());
+    assertEquals(expectedAttachment.getMime_type(), actualAttachment.getMime_type());
+    assertEquals(expectedAttachment.getSize(), actualAttachment.getSize());
+  }
+
+}
@@ -19,12 +19,15 @@ package it.feio.android.omninotes.utils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import it.feio.android.omninotes.BaseAndroidTestCase;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteSummary;
 import java.util.Collections;
 import org.junit.Before;
 import org.junit.Test;
@@ -57,4 +60,16 @@ public class ParcelableUtilTest extends BaseAndroidTestCase {
   public void marshall() {
     assertArrayEquals(marshalledNote, ParcelableUtil.marshall(testNote));
   }
+  @Test
+  public void unmarshallKeepsSummaries() {
+    NoteSummary summary = new NoteSummary();
+    summary.setTitle("summary");
+
+    Note unmarshalled = ParcelableUtil.unmarshall(ParcelableUtil.marshall(summary), Note.CREATOR);
+
+    assertTrue(unmarshalled instanceof NoteSummary);
+    assertEquals("summary", unmarshalled.getTitle());
+    assertFalse(ParcelableUtil.unmarshall(marshalledNote, Note.CREATOR) instanceof NoteSummary);
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import de.greenrobot.event.EventBus;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
+import it.feio.android.omninotes.helpers.ThumbnailCache;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.ConstantsBase;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class WidgetBitmapCacheTest extends BaseAndroidTestCase {
+
+  private Note note;
+  private Attachment attachment;
+
+
+  @Before
+  public void setUp() throws IOException {
+    File attachmentFile = File.createTempFile("widgetBitmapTest", ".jpg");
+    attachmentFile.setLastModified(System.currentTimeMillis() - 10000);
+    attachment = new Attachment(Uri.fromFile(attachmentFile), ConstantsBase.MIME_TYPE_IMAGE);
+    attachment.setId(System.currentTimeMillis());
+    note = new Note();
+    note.setCreation(attachment.getId());
+    note.addAttachment(attachment);
+    // Thumbnail is read from disk cache, so no real image must be decoded
+    ThumbnailCache.put(testContext, attachment, ThumbnailCache.WIDGET_SIZE,
+        ThumbnailCache.WIDGET_SIZE, Bitmap.createBitmap(ThumbnailCache.WIDGET_SIZE,
+            ThumbnailCache.WIDGET_SIZE, Config.ARGB_8888));
+  }
+
+
+  @Test
+  public void get_decodesOnlyOnce() {
+    WidgetBitmapCache cache = WidgetBitmapCache.getInstance();
+    int hits = cache.getHitCount();
+    int misses = cache.getMissCount();
+
+    Bitmap first = cache.get(testContext, note, attachment);
+    Bitmap second = cache.get(testContext, note, attachment);
+
+    assertNotNull(first);
+    assertSame(first, second);
+    assertEquals(hits + 1, cache.getHitCount());
+    assertEquals(misses + 1, cache.getMissCount());
+  }
+
+
+  @Test
+  public void notesUpdatedEvent_invalidatesNoteBitmap() {
+    WidgetBitmapCache cache = WidgetBitmapCache.getInstance();
+    cache.get(testContext, note, attachment);
+    int misses = cache.getMissCount();
+
+    EventBus.getDefault().post(new NotesUpdatedEvent(Collections.singletonList(note)));
+    cache.get(testContext, note, attachment);
+
+    assertEquals(misses + 1, cache.getMissCount());
+  }
+
+
+  @Test
+  public void invalidate_releasesNoteMapping() {
+    WidgetBitmapCache cache = WidgetBitmapCache.getInstance();
+    cache.invalidate(note);
+    int notes = cache.getNotesCount();
+
+    cache.get(testContext, note, attachment);
+    assertEquals(notes + 1, cache.getNotesCount());
+
+    cache.invalidate(note);
+    assertEquals(notes, cache.getNotesCount());
+  }
+
+}
@@ -45,3 +45,107 @@ CREATE
 		description TEXT,
 		color TEXT
 	);
+
+
+
+-- Indexes used by the most frequent lookups
+CREATE INDEX attachments_note_id_idx ON attachments (note_id);
+CREATE INDEX attachments_uri_idx ON attachments (uri);
+CREATE INDEX notes_trashed_archived_category_idx ON notes (trashed, archived, category_id);
+CREATE INDEX notes_category_idx ON notes (category_id);
+CREATE INDEX notes_alarm_reminder_fired_idx ON notes (alarm, reminder_fired);
+CREATE INDEX notes_last_modification_idx ON notes (last_modification);
+
+
+
+-- Full-text index on notes title and content. Locked notes content is encrypted so only
+-- their title is indexed
+CREATE VIRTUAL TABLE notes_fts USING fts4(title, content);
+
+CREATE TRIGGER notes_fts_insert AFTER INSERT ON notes
+BEGIN
+	INSERT OR REPLACE INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER notes_fts_update AFTER UPDATE OF creation, title, content, locked ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+	INSERT INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER notes_fts_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+END;
+
+
+
+-- Notes number of each navigation shown by the dynamic menu, kept up to date by triggers
+CREATE TABLE navigation_counters
+	(
+		id INTEGER PRIMARY KEY CHECK (id = 0),
+		archived INTEGER NOT NULL DEFAULT 0,
+		trashed INTEGER NOT NULL DEFAULT 0,
+		uncategorized INTEGER NOT NULL DEFAULT 0,
+		reminders INTEGER NOT NULL DEFAULT 0
+	);
+
+INSERT INTO navigation_counters(id) VALUES (0);
+
+-- Notes are saved with "INSERT OR REPLACE", whose implicit deletion doesn't fire delete triggers,
+-- so the replaced note is subtracted before insertion
+CREATE TRIGGER navigation_counters_replace BEFORE INSERT ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived - IFNULL((SELECT trashed IS NOT 1 AND archived = 1 FROM notes WHERE creation = new.creation), 0),
+		trashed = trashed - IFNULL((SELECT trashed = 1 FROM notes WHERE creation = new.creation), 0),
+		uncategorized = uncategorized - IFNULL((SELECT CAST(IFNULL(category_id, 0) AS INTEGER) = 0 FROM notes WHERE creation = new.creation), 0),
+		reminders = reminders - IFNULL((SELECT trashed IS NOT 1 AND archived IS NOT 1 AND alarm IS NOT NULL FROM notes WHERE creation = new.creation), 0);
+END;
+
+CREATE TRIGGER navigation_counters_insert AFTER INSERT ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived + (new.trashed IS NOT 1 AND new.archived = 1),
+		trashed = trashed + (new.trashed = 1),
+		uncategorized = uncategorized + (CAST(IFNULL(new.category_id, 0) AS INTEGER) = 0),
+		reminders = reminders + (new.trashed IS NOT 1 AND new.archived IS NOT 1 AND new.alarm IS NOT NULL);
+END;
+
+CREATE TRIGGER navigation_counters_update AFTER UPDATE OF archived, trashed, category_id, alarm ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived - (old.trashed IS NOT 1 AND old.archived = 1) + (new.trashed IS NOT 1 AND new.archived = 1),
+		trashed = trashed - (old.trashed = 1) + (new.trashed = 1),
+		uncategorized = uncategorized - (CAST(IFNULL(old.category_id, 0) AS INTEGER) = 0) + (CAST(IFNULL(new.category_id, 0) AS INTEGER) = 0),
+		reminders = reminders - (old.trashed IS NOT 1 AND old.archived IS NOT 1 AND old.alarm IS NOT NULL) + (new.trashed IS NOT 1 AND new.archived IS NOT 1 AND new.alarm IS NOT NULL);
+END;
+
+CREATE TRIGGER navigation_counters_delete AFTER DELETE ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived - (old.trashed IS NOT 1 AND old.archived = 1),
+		trashed = trashed - (old.trashed = 1),
+		uncategorized = uncategorized - (CAST(IFNULL(old.category_id, 0) AS INTEGER) = 0),
+		reminders = reminders - (old.trashed IS NOT 1 AND old.archived IS NOT 1 AND old.alarm IS NOT NULL);
+END;
+
+
+
+-- Hashtags found in notes title and content, re-derived each time a note is saved. Locked notes
+-- content is encrypted so only their title tags are indexed
+CREATE TABLE note_tags
+	(
+		note_id INTEGER NOT NULL,
+		tag TEXT NOT NULL,
+		PRIMARY KEY (note_id, tag)
+	);
+
+CREATE INDEX note_tags_tag_idx ON note_tags (tag, note_id);
+
+CREATE TRIGGER note_tags_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM note_tags WHERE note_id = old.creation;
+END;
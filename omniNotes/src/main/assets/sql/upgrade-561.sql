@@ -0,0 +1,16 @@
+/*
+ * Adds secondary indexes to avoid full table scans on attachments and notes lookups
+ */
+
+-- Attachments are always retrieved by their note
+CREATE INDEX IF NOT EXISTS attachments_note_id_idx ON attachments (note_id);
+
+-- Navigation filters (trash, archive, categories)
+CREATE INDEX IF NOT EXISTS notes_trashed_archived_category_idx ON notes (trashed, archived, category_id);
+CREATE INDEX IF NOT EXISTS notes_category_idx ON notes (category_id);
+
+-- Reminders
+CREATE INDEX IF NOT EXISTS notes_alarm_reminder_fired_idx ON notes (alarm, reminder_fired);
+
+-- Sorting by last modification
+CREATE INDEX IF NOT EXISTS notes_last_modification_idx ON notes (last_modification);
@@ -0,0 +1,30 @@
+/*
+ * Adds a full-text index to search notes, kept in sync with notes table by triggers
+ */
+
+-- Full-text index on notes title and content. Locked notes content is encrypted so only
+-- their title is indexed
+CREATE VIRTUAL TABLE IF NOT EXISTS notes_fts USING fts4(title, content);
+
+CREATE TRIGGER IF NOT EXISTS notes_fts_insert AFTER INSERT ON notes
+BEGIN
+	INSERT OR REPLACE INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER IF NOT EXISTS notes_fts_update AFTER UPDATE OF creation, title, content, locked ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+	INSERT INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER IF NOT EXISTS notes_fts_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+END;
+
+-- Indexing of already existing notes
+INSERT OR REPLACE INTO notes_fts(docid, title, content)
+SELECT creation, title, CASE WHEN locked = 1 THEN NULL ELSE content END
+FROM notes;
@@ -0,0 +1,60 @@
+/*
+ * Adds navigation counters used by dynamic menu, kept in sync with notes table by triggers
+ */
+
+-- Notes number of each navigation shown by the dynamic menu, kept up to date by triggers
+CREATE TABLE IF NOT EXISTS navigation_counters
+	(
+		id INTEGER PRIMARY KEY CHECK (id = 0),
+		archived INTEGER NOT NULL DEFAULT 0,
+		trashed INTEGER NOT NULL DEFAULT 0,
+		uncategorized INTEGER NOT NULL DEFAULT 0,
+		reminders INTEGER NOT NULL DEFAULT 0
+	);
+
+-- Counting of already existing notes
+INSERT OR REPLACE INTO navigation_counters(id, archived, trashed, uncategorized, reminders)
+SELECT 0,
+	IFNULL(SUM(trashed IS NOT 1 AND archived = 1), 0),
+	IFNULL(SUM(trashed = 1), 0),
+	IFNULL(SUM(CAST(IFNULL(category_id, 0) AS INTEGER) = 0), 0),
+	IFNULL(SUM(trashed IS NOT 1 AND archived IS NOT 1 AND alarm IS NOT NULL), 0)
+FROM notes;
+
+-- Notes are saved with "INSERT OR REPLACE", whose implicit deletion doesn't fire delete triggers,
+-- so the replaced note is subtracted before insertion
+CREATE TRIGGER IF NOT EXISTS navigation_counters_replace BEFORE INSERT ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived - IFNULL((SELECT trashed IS NOT 1 AND archived = 1 FROM notes WHERE creation = new.creation), 0),
+		trashed = trashed - IFNULL((SELECT trashed = 1 FROM notes WHERE creation = new.creation), 0),
+		uncategorized = uncategorized - IFNULL((SELECT CAST(IFNULL(category_id, 0) AS INTEGER) = 0 FROM notes WHERE creation = new.creation), 0),
+		reminders = reminders - IFNULL((SELECT trashed IS NOT 1 AND archived IS NOT 1 AND alarm IS NOT NULL FROM notes WHERE creation = new.creation), 0);
+END;
+
+CREATE TRIGGER IF NOT EXISTS navigation_counters_insert AFTER INSERT ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived + (new.trashed IS NOT 1 AND new.archived = 1),
+		trashed = trashed + (new.trashed = 1),
+		uncategorized = uncategorized + (CAST(IFNULL(new.category_id, 0) AS INTEGER) = 0),
+		reminders = reminders + (new.trashed IS NOT 1 AND new.archived IS NOT 1 AND new.alarm IS NOT NULL);
+END;
+
+CREATE TRIGGER IF NOT EXISTS navigation_counters_update AFTER UPDATE OF archived, trashed, category_id, alarm ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived - (old.trashed IS NOT 1 AND old.archived = 1) + (new.trashed IS NOT 1 AND new.archived = 1),
+		trashed = trashed - (old.trashed = 1) + (new.trashed = 1),
+		uncategorized = uncategorized - (CAST(IFNULL(old.category_id, 0) AS INTEGER) = 0) + (CAST(IFNULL(new.category_id, 0) AS INTEGER) = 0),
+		reminders = reminders - (old.trashed IS NOT 1 AND old.archived IS NOT 1 AND old.alarm IS NOT NULL) + (new.trashed IS NOT 1 AND new.archived IS NOT 1 AND new.alarm IS NOT NULL);
+END;
+
+CREATE TRIGGER IF NOT EXISTS navigation_counters_delete AFTER DELETE ON notes
+BEGIN
+	UPDATE navigation_counters SET
+		archived = archived - (old.trashed IS NOT 1 AND old.archived = 1),
+		trashed = trashed - (old.trashed = 1),
+		uncategorized = uncategorized - (CAST(IFNULL(old.category_id, 0) AS INTEGER) = 0),
+		reminders = reminders - (old.trashed IS NOT 1 AND old.archived IS NOT 1 AND old.alarm IS NOT NULL);
+END;
@@ -0,0 +1,18 @@
+/*
+ * Adds the index of notes hashtags, filled in by the upgrade processor once the upgrade is done
+ */
+
+-- Hashtags found in notes title and content, re-derived each time a note is saved
+CREATE TABLE IF NOT EXISTS note_tags
+	(
+		note_id INTEGER NOT NULL,
+		tag TEXT NOT NULL,
+		PRIMARY KEY (note_id, tag)
+	);
+
+CREATE INDEX IF NOT EXISTS note_tags_tag_idx ON note_tags (tag, note_id);
+
+CREATE TRIGGER IF NOT EXISTS note_tags_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM note_tags WHERE note_id = old.creation;
+END;
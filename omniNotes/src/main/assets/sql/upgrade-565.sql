@@ -0,0 +1,5 @@
+/*
+ * Adds the index used to count references to attachment files shared by many attachments
+ */
+
+CREATE INDEX IF NOT EXISTS attachments_uri_idx ON attachments (uri);
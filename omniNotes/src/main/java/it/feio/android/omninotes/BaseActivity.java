@@ -27,6 +27,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
 import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -41,8 +43,10 @@ import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.models.PasswordValidator;
 import it.feio.android.omninotes.utils.Navigation;
 import it.feio.android.omninotes.utils.PasswordHelper;
+import it.feio.android.omninotes.widget.ListRemoteViewsFactory;
 import it.feio.android.omninotes.widget.ListWidgetProvider;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 @SuppressLint("Registered")
@@ -50,6 +54,9 @@ public class BaseActivity extends AppCompatActivity {
 
   protected static final int TRANSITION_VERTICAL = 0;
   protected static final int TRANSITION_HORIZONTAL = 1;
+  private static final long APP_WIDGETS_NOTIFICATION_DELAY = 500;
+  private static final Handler appWidgetsHandler = new Handler(Looper.getMainLooper());
+  private static boolean appWidgetsNotificationPending;
 
   protected String navigation;
   protected String navigationTmp; // used for widget navigation
@@ -89,19 +96,29 @@ public class BaseActivity extends AppCompatActivity {
    */
   public void requestPassword(final Activity mActivity, List<Note> notes,
       final PasswordValidator mPasswordValidator) {
-    if (Prefs.getBoolean("settings_password_access", false)) {
-      mPasswordValidator.onPasswordValidated(PasswordValidator.Result.SUCCEED);
-      return;
-    }
-
-    boolean askForPassword = false;
+    boolean lockedNotes = false;
     for (Note note : notes) {
       if (note.isLocked()) {
-        askForPassword = true;
+        lockedNotes = true;
         break;
       }
     }
-    if (askForPassword) {
+    requestPassword(mActivity, lockedNotes, mPasswordValidator);
+  }
+
+
+  /**
+   * Same as {@link #requestPassword(Activity, List, PasswordValidator)} when it's already known if
+   * any locked note is involved
+   */
+  public void requestPassword(final Activity mActivity, boolean lockedNotes,
+      final PasswordValidator mPasswordValidator) {
+    if (Prefs.getBoolean("settings_password_access", false)) {
+      mPasswordValidator.onPasswordValidated(PasswordValidator.Result.SUCCEED);
+      return;
+    }
+
+    if (lockedNotes) {
       PasswordHelper.requestPassword(mActivity, mPasswordValidator);
     } else {
       mPasswordValidator.onPasswordValidated(PasswordValidator.Result.SUCCEED);
@@ -121,9 +138,38 @@ public class BaseActivity extends AppCompatActivity {
   }
 
   /**
-   * Notifies App Widgets about data changes so they can update theirselves
+   * Notifies App Widgets about data changes so they can update theirselves, reloading all notes
    */
   public static void notifyAppWidgets(Context context) {
+    notifyAppWidgets(context, null);
+  }
+
+
+  /**
+   * Notifies App Widgets about changes of some notes. Bursts of changes, like the ones of many
+   * notes saved in a row, are coalesced into a single notification sent after a short delay.
+   *
+   * @param changedNoteIds Changed notes, or null if unknown
+   */
+  public static void notifyAppWidgets(Context context, Collection<Long> changedNoteIds) {
+    ListRemoteViewsFactory.notifyNotesChanged(changedNoteIds);
+    Context appContext = context.getApplicationContext();
+    synchronized (BaseActivity.class) {
+      if (appWidgetsNotificationPending) {
+        return;
+      }
+      appWidgetsNotificationPending = true;
+    }
+    appWidgetsHandler.postDelayed(() -> {
+      synchronized (BaseActivity.class) {
+        appWidgetsNotificationPending = false;
+      }
+      sendAppWidgetsNotification(appContext);
+    }, APP_WIDGETS_NOTIFICATION_DELAY);
+  }
+
+
+  private static void sendAppWidgetsNotification(Context context) {
     // Home widgets
     AppWidgetManager mgr = AppWidgetManager.getInstance(context);
     int[] ids = mgr.getAppWidgetIds(new ComponentName(context, ListWidgetProvider.class));
@@ -158,6 +158,8 @@ public class CategoryActivity extends AppCompatActivity implements
     // Saved to DB and new ID or update result catched
     DbHelper db = DbHelper.getInstance();
     category = db.updateCategory(category);
+    // Widgets rows are reused while notes don't change, so they're all reloaded to show new color
+    BaseActivity.notifyAppWidgets(this);
 
     // Sets result to show proper message
     getIntent().putExtra(INTENT_CATEGORY, category);
@@ -132,11 +132,13 @@ import it.feio.android.omninotes.async.notes.SaveNoteTask;
 import it.feio.android.omninotes.databinding.FragmentDetailBinding;
 import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.exceptions.checked.UnhandledIntentException;
+import it.feio.android.omninotes.helpers.AttachmentStore;
 import it.feio.android.omninotes.helpers.AttachmentsHelper;
 import it.feio.android.omninotes.helpers.IntentHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.helpers.PermissionsHelper;
 import it.feio.android.omninotes.helpers.TagOpenerHelper;
+import it.feio.android.omninotes.helpers.ThumbnailCache;
 import it.feio.android.omninotes.helpers.date.DateHelper;
 import it.feio.android.omninotes.helpers.date.RecurrenceHelper;
 import it.feio.android.omninotes.helpers.notifications.NotificationChannels.NotificationChannelNames;
@@ -1441,7 +1443,7 @@ public class DetailFragment extends BaseFragment implements OnReminderPickedList
           if (!noteTmp.getAttachmentsList().equals(note.getAttachmentsList())) {
             for (Attachment newAttachment : noteTmp.getAttachmentsList()) {
               if (!note.getAttachmentsList().contains(newAttachment)) {
-                StorageHelper.delete(mainActivity, newAttachment.getUri().getPath());
+                AttachmentStore.release(mainActivity, newAttachment);
               }
             }
           }
@@ -1455,7 +1457,8 @@ public class DetailFragment extends BaseFragment implements OnReminderPickedList
           if (noteOriginal.get_id() != null) {
             new SaveNoteTask(mFragment, false)
                 .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, noteOriginal);
-            BaseActivity.notifyAppWidgets(mainActivity);
+            BaseActivity.notifyAppWidgets(mainActivity,
+                Collections.singletonList(noteOriginal.get_id()));
           } else {
             goHome();
           }
@@ -1876,8 +1879,8 @@ public class DetailFragment extends BaseFragment implements OnReminderPickedList
     List<Attachment> attachments = note.getAttachmentsList();
     if (!attachments.isEmpty() && !attachments.get(0).getMime_type().equals(MIME_TYPE_FILES)) {
       Bitmap notificationIcon = BitmapHelper
-          .getBitmapFromAttachment(getContext(), note.getAttachmentsList().get(0), 128,
-              128);
+          .getBitmapFromAttachment(getContext(), note.getAttachmentsList().get(0),
+              ThumbnailCache.NOTIFICATION_SIZE, ThumbnailCache.NOTIFICATION_SIZE);
       notificationsHelper.setLargeIcon(notificationIcon);
     }
 
@@ -85,15 +85,20 @@ import de.keyboardsurfer.android.widget.crouton.Style;
 import it.feio.android.omninotes.async.bus.CategoriesUpdatedEvent;
 import it.feio.android.omninotes.async.bus.NavigationUpdatedNavDrawerClosedEvent;
 import it.feio.android.omninotes.async.bus.NotesLoadedEvent;
+import it.feio.android.omninotes.async.bus.NotesPageLoadedEvent;
 import it.feio.android.omninotes.async.bus.NotesMergeEvent;
 import it.feio.android.omninotes.async.bus.PasswordRemovedEvent;
+import it.feio.android.omninotes.async.notes.EmptyTrashTask;
 import it.feio.android.omninotes.async.notes.NoteLoaderTask;
+import it.feio.android.omninotes.async.notes.NotePageLoaderTask;
 import it.feio.android.omninotes.async.notes.NoteProcessorArchive;
 import it.feio.android.omninotes.async.notes.NoteProcessorCategorize;
 import it.feio.android.omninotes.async.notes.NoteProcessorDelete;
 import it.feio.android.omninotes.async.notes.NoteProcessorTrash;
 import it.feio.android.omninotes.databinding.FragmentListBinding;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.NotePagingSource;
+import it.feio.android.omninotes.db.NoteQuery;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.helpers.NotesHelper;
 import it.feio.android.omninotes.models.Category;
@@ -171,6 +176,9 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
   private boolean searchLabelActive = false;
 
   private NoteAdapter listAdapter;
+  private NotePagingSource pagingSource;
+  private boolean pageLoading;
+  private Runnable pendingAllNotesLoadedAction;
   private UndoBarController ubc;
   private Fab fab;
   private MainActivity mainActivity;
@@ -509,6 +517,40 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
     });
 
     binding.listRoot.setOnViewTouchedListener(this);
+
+    // Further pages of notes are loaded when approaching the end of the list
+    binding.list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+      @Override
+      public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        if (listAdapter != null && layoutManager != null && layoutManager.findLastVisibleItemPosition()
+            >= listAdapter.getItemCount() - NotePagingSource.PAGE_SIZE / 2) {
+          loadNextNotesPage();
+        }
+      }
+    });
+  }
+
+
+  private void loadNextNotesPage() {
+    if (pagingSource != null && !pageLoading && !pagingSource.isEndReached()) {
+      pageLoading = true;
+      new NotePageLoaderTask(pagingSource, false).execute();
+    }
+  }
+
+
+  /**
+   * Runs an action needing all the notes of the list, loading the ones not retrieved yet before
+   */
+  private void withAllNotesLoaded(Runnable action) {
+    if (pagingSource == null || pagingSource.isEndReached()) {
+      action.run();
+    } else {
+      pendingAllNotesLoadedAction = action;
+      // Tasks are executed serially so eventual pages already requested will be delivered before
+      new NotePageLoaderTask(pagingSource, true).execute();
+    }
   }
 
 
@@ -715,7 +757,8 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
                     searchPerformed && mFragment.isAdded()) {
                   searchTags = null;
                   searchQuery = pattern;
-                  NoteLoaderTask.getInstance().execute("getNotesByPattern", pattern);
+                  NoteLoaderTask.getInstance()
+                      .execute(new NotePagingSource(NoteQuery.forPattern(pattern)));
                   return true;
                 } else {
                   searchPerformed = true;
@@ -897,7 +940,8 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
   private void addReminders() {
     Intent intent = new Intent(OmniNotes.getAppContext(), SnoozeActivity.class);
     intent.setAction(ACTION_POSTPONE);
-    intent.putExtra(INTENT_NOTE, selectedNotes.toArray(new Note[selectedNotes.size()]));
+    List<Note> notes = NotesHelper.toFullNotes(selectedNotes);
+    intent.putExtra(INTENT_NOTE, notes.toArray(new Note[notes.size()]));
     intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
     startActivityForResult(intent, REQUEST_CODE_ADD_ALARMS);
   }
@@ -944,6 +988,10 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       }
     } else {
       LogDelegate.d("Editing note with ID: " + note.get_id());
+      note = NotesHelper.toFullNote(note);
+      if (note == null) {
+        return;
+      }
     }
 
     // Current list scrolling position is saved to be restored later
@@ -1015,23 +1063,19 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
     new MaterialDialog.Builder(mainActivity)
         .content(R.string.empty_trash_confirmation)
         .positiveText(R.string.ok)
-        .onPositive((dialog, which) -> {
-          boolean mustDeleteLockedNotes = false;
-          for (int i = 0; i < listAdapter.getItemCount(); i++) {
-            selectedNotes.add(listAdapter.getItem(i));
-            mustDeleteLockedNotes = mustDeleteLockedNotes || listAdapter.getItem(i).isLocked();
-          }
-          if (mustDeleteLockedNotes) {
-            mainActivity.requestPassword(mainActivity, getSelectedNotes(),
-                passwordConfirmed -> {
-                  if (passwordConfirmed.equals(PasswordValidator.Result.SUCCEED)) {
-                    deleteNotesExecute();
-                  }
-                });
-          } else {
-            deleteNotesExecute();
-          }
-        }).build().show();
+        .onPositive((dialog, which) -> mainActivity.requestPassword(mainActivity,
+            DbHelper.getInstance().hasLockedNotesInTrash(), passwordConfirmed -> {
+              if (passwordConfirmed.equals(PasswordValidator.Result.SUCCEED)) {
+                emptyTrashExecute();
+              }
+            })).build().show();
+  }
+
+
+  private void emptyTrashExecute() {
+    listAdapter.remove(new ArrayList<>(listAdapter.getNotes()));
+    new EmptyTrashTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    mainActivity.showMessage(R.string.note_deleted, ONStyle.ALERT);
   }
 
 
@@ -1068,24 +1112,19 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       // Using tags
       if (searchTags != null && intent.getStringExtra(SearchManager.QUERY) == null) {
         searchQuery = searchTags;
-        NoteLoaderTask.getInstance()
-            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, "getNotesByTag",
-                searchQuery);
+        loadNotes(NoteQuery.forTags(searchQuery.split(",")));
       } else if (searchUncompleteChecklists || ACTION_SEARCH_UNCOMPLETE_CHECKLISTS.equals(
           intent.getAction())) {
         searchQuery = getContext().getResources().getString(R.string.uncompleted_checklists);
         searchUncompleteChecklists = true;
-        NoteLoaderTask.getInstance()
-            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, "getNotesByUncompleteChecklist");
+        loadNotes(NoteQuery.forUncompleteChecklists());
       } else {
         // Get the intent, verify the action and get the query
         if (intent.getStringExtra(SearchManager.QUERY) != null) {
           searchQuery = intent.getStringExtra(SearchManager.QUERY);
           searchTags = null;
         }
-        NoteLoaderTask.getInstance()
-            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, "getNotesByPattern",
-                searchQuery);
+        loadNotes(NoteQuery.forPattern(searchQuery));
       }
 
       toggleSearchLabel(true);
@@ -1105,21 +1144,27 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
         intent.removeExtra(INTENT_WIDGET);
         if (mainActivity.navigationTmp != null) {
           Long categoryId = Long.parseLong(mainActivity.navigationTmp);
-          NoteLoaderTask.getInstance().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR,
-              "getNotesByCategory", categoryId);
+          loadNotes(NoteQuery.forCategory(categoryId));
         } else {
-          NoteLoaderTask.getInstance()
-              .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, "getAllNotes", true);
+          loadNotes(NoteQuery.forCurrentNavigation());
         }
 
       } else {
-        NoteLoaderTask.getInstance()
-            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, "getAllNotes", true);
+        loadNotes(NoteQuery.forCurrentNavigation());
       }
     }
   }
 
 
+  private void loadNotes(NoteQuery noteQuery) {
+    // Enough notes are loaded to restore the scrolling position
+    NotePagingSource notePagingSource = new NotePagingSource(noteQuery)
+        .setFirstPageSize(listViewPosition + NotePagingSource.PAGE_SIZE);
+    NoteLoaderTask.getInstance()
+        .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, notePagingSource);
+  }
+
+
   public void toggleSearchLabel(boolean activate) {
     if (activate) {
       binding.searchQuery.setText(fromHtml(getString(R.string.search) + ":<b> " + searchQuery + "</b>"));
@@ -1165,6 +1210,9 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
 
 
   public void onEvent(NotesLoadedEvent notesLoadedEvent) {
+    pagingSource = notesLoadedEvent.getPagingSource();
+    pageLoading = false;
+    pendingAllNotesLoadedAction = null;
     listAdapter = new NoteAdapter(mainActivity, Prefs.getBoolean(PREF_EXPANDED_VIEW, true),
         notesLoadedEvent.getNotes());
 
@@ -1185,6 +1233,20 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
     closeFab();
   }
 
+  public void onEvent(NotesPageLoadedEvent notesPageLoadedEvent) {
+    // Pages belonging to a previous list are discarded
+    if (notesPageLoadedEvent.getPagingSource() != pagingSource) {
+      return;
+    }
+    pageLoading = false;
+    listAdapter.addNotes(notesPageLoadedEvent.getNotes());
+    if (pendingAllNotesLoadedAction != null && pagingSource.isEndReached()) {
+      Runnable action = pendingAllNotesLoadedAction;
+      pendingAllNotesLoadedAction = null;
+      action.run();
+    }
+  }
+
   private void initSwipeGesture() {
     ItemTouchHelper.SimpleCallback simpleItemTouchCallback = new ItemTouchHelper.SimpleCallback(0,
         ItemTouchHelper.LEFT | ItemTouchHelper.RIGHT) {
@@ -1344,6 +1406,11 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
    * Selects all notes in list
    */
   private void selectAllNotes() {
+    withAllNotesLoaded(this::selectAllLoadedNotes);
+  }
+
+
+  private void selectAllLoadedNotes() {
     for (int i = 0; i < binding.list.getChildCount(); i++) {
       LinearLayout v = binding.list.getChildAt(i).findViewById(R.id.card_layout);
       v.setBackgroundColor(getResources().getColor(R.color.list_bg_selected));
@@ -1569,7 +1636,8 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       return;
     }
 
-    final Integer[] preSelectedTags = TagsHelper.getPreselectedTagsArray(selectedNotes, tags);
+    final Integer[] preSelectedTags = TagsHelper
+        .getPreselectedTagsArray(NotesHelper.toFullNotes(selectedNotes), tags);
 
     new MaterialDialog.Builder(mainActivity)
         .title(R.string.select_tags)
@@ -1584,7 +1652,7 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
 
 
   private void tagNotesExecute(List<Tag> tags, Integer[] selectedTags, Integer[] preSelectedTags) {
-    for (Note note : getSelectedNotes()) {
+    for (Note note : NotesHelper.toFullNotes(getSelectedNotes())) {
       tagNote(tags, selectedTags, note);
     }
 
@@ -1714,7 +1782,7 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
    */
   private void share() {
     // Only one note should be selected to perform sharing but they'll be cycled anyhow
-    for (final Note note : getSelectedNotes()) {
+    for (final Note note : NotesHelper.toFullNotes(getSelectedNotes())) {
       mainActivity.shareNote(note);
     }
 
@@ -1736,7 +1804,7 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
   public void onEventAsync(NotesMergeEvent notesMergeEvent) {
 
     final Note finalMergedNote = NotesHelper
-        .mergeNotes(getSelectedNotes(), notesMergeEvent.keepMergedNotes);
+        .mergeNotes(NotesHelper.toFullNotes(getSelectedNotes()), notesMergeEvent.keepMergedNotes);
     new Handler(Looper.getMainLooper()).post(() -> {
 
       if (!notesMergeEvent.keepMergedNotes) {
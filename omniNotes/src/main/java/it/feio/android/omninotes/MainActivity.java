@@ -370,7 +370,7 @@ public class MainActivity extends BaseActivity implements
     if (receivedIntent(i)) {
       Note note = i.getParcelableExtra(INTENT_NOTE);
       if (note == null) {
-        note = DbHelper.getInstance().getNote(i.getIntExtra(INTENT_KEY, 0));
+        note = DbHelper.getInstance().getNote(i.getLongExtra(INTENT_KEY, 0));
       }
       // Checks if the same note is already opened to avoid to open again
       if (note != null && noteAlreadyOpened(note)) {
@@ -541,7 +541,7 @@ public class MainActivity extends BaseActivity implements
    */
   public void deleteNote(Note note) {
     new NoteProcessorDelete(Collections.singletonList(note)).process();
-    BaseActivity.notifyAppWidgets(this);
+    BaseActivity.notifyAppWidgets(this, Collections.singletonList(note.get_id()));
     LogDelegate.d("Deleted permanently note with ID '" + note.get_id() + "'");
   }
 
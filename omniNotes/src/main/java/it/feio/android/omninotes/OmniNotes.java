@@ -19,14 +19,18 @@ package it.feio.android.omninotes;
 
 import static it.feio.android.omninotes.utils.Constants.PACKAGE;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_LANG;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_NOTE_TAGS_REBUILD_PENDING;
 
 import android.content.Context;
 import android.content.res.Configuration;
+import android.os.AsyncTask;
 import android.os.StrictMode;
 import android.text.TextUtils;
 import androidx.multidex.MultiDexApplication;
 import com.pixplicity.easyprefs.library.Prefs;
+import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.LanguageHelper;
+import it.feio.android.omninotes.helpers.LockedNotesHelper;
 import it.feio.android.omninotes.helpers.notifications.NotificationsHelper;
 import org.acra.ACRA;
 import org.acra.config.CoreConfigurationBuilder;
@@ -60,6 +64,11 @@ public class OmniNotes extends MultiDexApplication {
     initSharedPreferences();
     enableStrictMode();
     new NotificationsHelper(this).initNotificationChannels();
+    AsyncTask.THREAD_POOL_EXECUTOR.execute(LockedNotesHelper::resumePendingRekey);
+    if (Prefs.getBoolean(PREF_NOTE_TAGS_REBUILD_PENDING, false)) {
+      AsyncTask.THREAD_POOL_EXECUTOR.execute(
+          () -> DbHelper.getInstance().rebuildNotesTagsIfPending());
+    }
   }
 
   private void initAcra() {
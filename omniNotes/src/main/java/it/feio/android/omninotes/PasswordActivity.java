@@ -18,10 +18,9 @@
 package it.feio.android.omninotes;
 
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
-import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_ANSWER;
-import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_QUESTION;
 
 import android.annotation.SuppressLint;
+import android.app.ProgressDialog;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
 import android.view.ViewGroup;
@@ -32,11 +31,10 @@ import de.greenrobot.event.EventBus;
 import de.keyboardsurfer.android.widget.crouton.Crouton;
 import de.keyboardsurfer.android.widget.crouton.LifecycleCallback;
 import it.feio.android.omninotes.async.bus.PasswordRemovedEvent;
-import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.models.ONStyle;
 import it.feio.android.omninotes.models.PasswordValidator;
+import it.feio.android.omninotes.utils.LoadingDialog;
 import it.feio.android.omninotes.utils.PasswordHelper;
-import it.feio.android.omninotes.utils.Security;
 import rx.Observable;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.schedulers.Schedulers;
@@ -166,16 +164,19 @@ public class PasswordActivity extends BaseActivity {
     } else if (passwordText.length() == 0) {
       Crouton.makeText(mActivity, R.string.empty_password, ONStyle.WARN, croutonHandle).show();
     } else {
+      LoadingDialog progressDialog = new LoadingDialog(mActivity);
+      progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+      progressDialog.setCancelable(false);
+      progressDialog.show();
       Observable
-          .from(DbHelper.getInstance().getNotesWithLock(true))
+          .fromCallable(() -> PasswordHelper.setPassword(passwordText, questionText, answerText,
+              (done, total) -> runOnUiThread(() -> {
+                progressDialog.setMax(total);
+                progressDialog.setProgress(done);
+              })))
           .subscribeOn(Schedulers.newThread())
           .observeOn(AndroidSchedulers.mainThread())
-          .doOnSubscribe(() -> Prefs.edit()
-              .putString(PREF_PASSWORD, Security.md5(passwordText))
-              .putString(PREF_PASSWORD_QUESTION, questionText)
-              .putString(PREF_PASSWORD_ANSWER, Security.md5(answerText))
-              .apply())
-          .doOnNext(note -> DbHelper.getInstance().updateNote(note, false))
+          .doOnTerminate(progressDialog::dismiss)
           .doOnCompleted(() -> {
             Crouton crouton = Crouton
                 .makeText(mActivity, R.string.password_successfully_changed, ONStyle
@@ -22,6 +22,8 @@ import android.os.AsyncTask;
 import android.text.TextUtils;
 import androidx.fragment.app.Fragment;
 import it.feio.android.omninotes.OmniNotes;
+import it.feio.android.omninotes.helpers.AttachmentStore;
+import it.feio.android.omninotes.helpers.ThumbnailCache;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.listeners.OnAttachingFileListener;
 import it.feio.android.omninotes.utils.StorageHelper;
@@ -64,12 +66,14 @@ public class AttachmentTask extends AsyncTask<Void, Void, Attachment> {
     if (isAlive()) {
       if (mAttachment != null) {
         mOnAttachingFileListener.onAttachingFileFinished(mAttachment);
+        AsyncTask.THREAD_POOL_EXECUTOR
+            .execute(() -> ThumbnailCache.generate(OmniNotes.getAppContext(), mAttachment));
       } else {
         mOnAttachingFileListener.onAttachingFileErrorOccurred(null);
       }
     } else {
       if (mAttachment != null) {
-        StorageHelper.delete(OmniNotes.getAppContext(), mAttachment.getUri().getPath());
+        AttachmentStore.release(OmniNotes.getAppContext(), mAttachment);
       }
     }
   }
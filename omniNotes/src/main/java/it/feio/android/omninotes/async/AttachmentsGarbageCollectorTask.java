@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.async;
+
+import android.os.AsyncTask;
+import it.feio.android.omninotes.OmniNotes;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.AttachmentsHelper;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.helpers.ThumbnailCache;
+import it.feio.android.omninotes.utils.StorageHelper;
+import java.util.Calendar;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+
+
+/**
+ * Deletes attachments files not referenced by any note anymore, like the ones of notes removed by
+ * emptying trash, together with their cached thumbnails, and reports the reclaimed space in bytes
+ */
+public class AttachmentsGarbageCollectorTask extends AsyncTask<Void, Void, Long> {
+
+  // Newer files could belong to notes still being edited and not saved yet
+  private static final long MIN_FILE_AGE = TimeUnit.DAYS.toMillis(1);
+
+
+  @Override
+  protected Long doInBackground(Void... params) {
+    if (!StorageHelper.checkStorage()) {
+      return 0L;
+    }
+    Set<String> referencedFileNames = DbHelper.getInstance().getAttachmentsFileNames();
+    long reclaimed = AttachmentsHelper.deleteUnreferencedFiles(StorageHelper.getAttachmentDir(),
+        referencedFileNames, Calendar.getInstance().getTimeInMillis() - MIN_FILE_AGE);
+    ThumbnailCache.deleteOrphans(OmniNotes.getAppContext(), StorageHelper.getAttachmentDir());
+    LogDelegate.i("Attachments garbage collection reclaimed " + reclaimed + " bytes ("
+        + FileUtils.byteCountToDisplaySize(reclaimed) + ")");
+    return reclaimed;
+  }
+
+}
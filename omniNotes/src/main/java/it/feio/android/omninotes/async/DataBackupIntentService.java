@@ -20,7 +20,9 @@ package it.feio.android.omninotes.async;
 import static android.app.PendingIntent.FLAG_UPDATE_CURRENT;
 import static it.feio.android.omninotes.helpers.IntentHelper.immutablePendingIntentFlag;
 import static it.feio.android.omninotes.utils.ConstantsBase.ACTION_RESTART_APP;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_BACKUP_ARCHIVE;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_BACKUP_FOLDER_URI;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_BACKUP_INCREMENTAL;
 
 import android.annotation.TargetApi;
 import android.app.IntentService;
@@ -47,6 +49,9 @@ import it.feio.android.omninotes.models.listeners.OnAttachingFileListener;
 import it.feio.android.omninotes.utils.ReminderHelper;
 import it.feio.android.omninotes.utils.StorageHelper;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import rx.Observable;
 
 public class DataBackupIntentService extends IntentService implements OnAttachingFileListener {
@@ -56,6 +61,9 @@ public class DataBackupIntentService extends IntentService implements OnAttachin
   public static final String ACTION_DATA_IMPORT = "action_data_import";
   public static final String ACTION_DATA_DELETE = "action_data_delete";
 
+  private static final String ARCHIVE_TEMP_MIME_TYPE = "application/octet-stream";
+  private static final String ARCHIVE_TEMP_SUFFIX = ".tmp";
+
   private NotificationsHelper mNotificationsHelper;
 
 //    {
@@ -104,31 +112,91 @@ public class DataBackupIntentService extends IntentService implements OnAttachin
 
   private void exportDataWithScopedStorage(Intent intent) {
     String backupName = intent.getStringExtra(INTENT_BACKUP_NAME);
-    var backupDir = DocumentFileCompat.Companion.fromTreeUri(getBaseContext(),
-        Uri.parse(Prefs.getString(PREF_BACKUP_FOLDER_URI, null))).createDirectory(backupName);
+    var backupsDir = DocumentFileCompat.Companion.fromTreeUri(getBaseContext(),
+        Uri.parse(Prefs.getString(PREF_BACKUP_FOLDER_URI, null)));
+    if (Prefs.getBoolean(PREF_BACKUP_ARCHIVE, false)) {
+      exportArchiveWithScopedStorage(backupsDir, backupName);
+      return;
+    }
+
+    var backupDir = backupsDir.findFile(backupName);
+    // A previously used backup name is updated with changes only, or cleaned for a full export
+    if (backupDir != null && !isIncrementalExport()) {
+      backupDir.delete();
+      backupDir = null;
+    }
+    if (backupDir == null) {
+      backupDir = backupsDir.createDirectory(backupName);
+    }
 
-    BackupHelper.exportNotes(backupDir);
-    BackupHelper.exportAttachments(backupDir, mNotificationsHelper);
+    exportToFolder(backupDir);
     mNotificationsHelper.finish(getString(R.string.data_export_completed), backupDir.getUri().getPath());
   }
 
+  /**
+   * Archive is written with a temporary name and replaces the previous one only once completed, so
+   * a failed export doesn't leave the user without backup
+   */
+  private void exportArchiveWithScopedStorage(DocumentFileCompat backupsDir, String backupName) {
+    String archiveName = backupName + BackupHelper.ARCHIVE_EXTENSION;
+    var tempArchive = backupsDir.createFile(ARCHIVE_TEMP_MIME_TYPE,
+        archiveName + ARCHIVE_TEMP_SUFFIX);
+    try (OutputStream archiveStream = getContentResolver().openOutputStream(tempArchive.getUri())) {
+      BackupHelper.exportArchive(archiveStream, mNotificationsHelper);
+    } catch (IOException e) {
+      LogDelegate.e("Error exporting backup archive", e);
+      tempArchive.delete();
+      mNotificationsHelper.finish(getString(R.string.data_export_failed), backupName);
+      return;
+    }
+
+    var previousArchive = backupsDir.findFile(archiveName);
+    if (previousArchive != null) {
+      previousArchive.delete();
+    }
+    if (!tempArchive.renameTo(archiveName)) {
+      LogDelegate.e("Error renaming backup archive " + tempArchive.getName());
+      mNotificationsHelper.finish(getString(R.string.data_export_failed), backupName);
+      return;
+    }
+    var archive = backupsDir.findFile(archiveName);
+    mNotificationsHelper.finish(getString(R.string.data_export_completed),
+        (archive != null ? archive : tempArchive).getUri().getPath());
+  }
+
   private synchronized void exportDataWithoutScopedStorage(Intent intent) {
     String backupName = intent.getStringExtra(INTENT_BACKUP_NAME);
     File backupDir = StorageHelper.getOrCreateBackupDir(backupName);
 
-    // Directory clean in case of previously used backup name
-    StorageHelper.delete(this, backupDir.getAbsolutePath());
-    // Directory is re-created in case of previously used backup name (removed above)
-    backupDir = StorageHelper.getOrCreateBackupDir(backupName);
+    // A previously used backup name is updated with changes only, or cleaned for a full export
+    if (!isIncrementalExport()) {
+      StorageHelper.delete(this, backupDir.getAbsolutePath());
+      // Directory is re-created in case of previously used backup name (removed above)
+      backupDir = StorageHelper.getOrCreateBackupDir(backupName);
+    }
 
-    BackupHelper.exportNotes(DocumentFileCompat.Companion.fromFile(getBaseContext(), backupDir));
-    BackupHelper.exportAttachments(
-        DocumentFileCompat.Companion.fromFile(getBaseContext(), backupDir), mNotificationsHelper);
+    exportToFolder(DocumentFileCompat.Companion.fromFile(getBaseContext(), backupDir));
     mNotificationsHelper.finish(getString(R.string.data_export_completed), backupDir.getAbsolutePath());
   }
 
+  private boolean isIncrementalExport() {
+    return Prefs.getBoolean(PREF_BACKUP_INCREMENTAL, true);
+  }
+
+  private void exportToFolder(DocumentFileCompat backupDir) {
+    if (isIncrementalExport()) {
+      BackupHelper.exportIncrementally(backupDir, mNotificationsHelper);
+    } else {
+      BackupHelper.exportNotes(backupDir);
+      BackupHelper.exportAttachments(backupDir, mNotificationsHelper);
+    }
+  }
+
   private synchronized void importData(Intent intent) {
-    if (Build.VERSION.SDK_INT >= VERSION_CODES.O) {
+    // Archives are always exported into the backups folder chosen by the user, whatever the API
+    if (intent.getStringExtra(INTENT_BACKUP_NAME).endsWith(BackupHelper.ARCHIVE_EXTENSION)) {
+      importArchive(intent);
+    } else if (Build.VERSION.SDK_INT >= VERSION_CODES.O) {
       importDataWithScopedStorage(intent);
     } else {
       importDataWithoutScopedStorage(intent);
@@ -140,7 +208,7 @@ public class DataBackupIntentService extends IntentService implements OnAttachin
 
     var backupDirDocumentFile = DocumentFileCompat.Companion.fromFile(getBaseContext(),
         backupDir);
-    BackupHelper.importNotes(backupDirDocumentFile);
+    BackupHelper.importNotes(backupDirDocumentFile, mNotificationsHelper);
     BackupHelper.importAttachments(backupDirDocumentFile, mNotificationsHelper);
 
     resetReminders();
@@ -164,7 +232,7 @@ public class DataBackupIntentService extends IntentService implements OnAttachin
         .filter(f -> f.getName().equals(intent.getStringExtra(INTENT_BACKUP_NAME))).toBlocking()
         .single();
 
-    BackupHelper.importNotes(backupDir);
+    BackupHelper.importNotes(backupDir, mNotificationsHelper);
     BackupHelper.importAttachments(backupDir, mNotificationsHelper);
 
     resetReminders();
@@ -181,6 +249,34 @@ public class DataBackupIntentService extends IntentService implements OnAttachin
 //        }
   }
 
+  private synchronized void importArchive(Intent intent) {
+    String archiveName = intent.getStringExtra(INTENT_BACKUP_NAME);
+    String backupsFolderUri = Prefs.getString(PREF_BACKUP_FOLDER_URI, null);
+    var archive = Build.VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP && backupsFolderUri != null
+        ? DocumentFileCompat.Companion.fromTreeUri(getBaseContext(), Uri.parse(backupsFolderUri))
+        .findFile(archiveName)
+        : null;
+    if (archive == null) {
+      LogDelegate.e("Backup archive not found: " + archiveName);
+      mNotificationsHelper.finish(getString(R.string.data_import_failed), archiveName);
+      return;
+    }
+
+    try (InputStream archiveStream = getContentResolver().openInputStream(archive.getUri())) {
+      BackupHelper.importArchive(archiveStream, mNotificationsHelper);
+    } catch (IOException e) {
+      LogDelegate.e("Error importing backup archive", e);
+      mNotificationsHelper.finish(getString(R.string.data_import_failed), archiveName);
+      return;
+    }
+
+    resetReminders();
+    mNotificationsHelper.cancel();
+
+    createNotification(intent, this, getString(R.string.data_import_completed),
+        getString(R.string.click_to_refresh_application), null);
+  }
+
   private synchronized void deleteData(Intent intent) {
     String backupName = intent.getStringExtra(INTENT_BACKUP_NAME);
     File backupDir = StorageHelper.getOrCreateBackupDir(backupName);
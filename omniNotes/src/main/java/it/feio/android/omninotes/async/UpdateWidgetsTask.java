@@ -22,6 +22,9 @@ import android.os.AsyncTask;
 import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.BaseActivity;
 import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.List;
 
 public class UpdateWidgetsTask extends AsyncTask<Void, Void, Void> {
 
@@ -44,7 +47,11 @@ public class UpdateWidgetsTask extends AsyncTask<Void, Void, Void> {
     }
 
     public void onEvent(NotesUpdatedEvent event) {
-      BaseActivity.notifyAppWidgets(context);
+      List<Long> changedNoteIds = new ArrayList<>();
+      for (Note note : event.getNotes()) {
+        changedNoteIds.add(note.get_id());
+      }
+      BaseActivity.notifyAppWidgets(context, changedNoteIds);
       EventBus.getDefault().unregister(this);
     }
   }
@@ -17,6 +17,7 @@
 
 package it.feio.android.omninotes.async.bus;
 
+import it.feio.android.omninotes.db.NotePagingSource;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Note;
 import java.util.List;
@@ -30,9 +31,17 @@ public class NotesLoadedEvent {
   @Setter
   private List<Note> notes;
 
+  @Getter
+  private NotePagingSource pagingSource;
+
   public NotesLoadedEvent(List<Note> notes) {
+    this(notes, null);
+  }
+
+  public NotesLoadedEvent(List<Note> notes, NotePagingSource pagingSource) {
     LogDelegate.d(this.getClass().getName());
     this.notes = notes;
+    this.pagingSource = pagingSource;
   }
 
 }
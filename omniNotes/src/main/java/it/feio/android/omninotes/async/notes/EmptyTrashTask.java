@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.async.notes;
+
+import android.os.AsyncTask;
+import it.feio.android.omninotes.async.AttachmentsGarbageCollectorTask;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.LogDelegate;
+
+
+/**
+ * Deletes all trashed notes at once, then their attachments files are collected
+ */
+public class EmptyTrashTask extends AsyncTask<Void, Void, Integer> {
+
+  @Override
+  protected Integer doInBackground(Void... params) {
+    return DbHelper.getInstance().emptyTrash();
+  }
+
+
+  @Override
+  protected void onPostExecute(Integer deletedNotes) {
+    LogDelegate.d("Trash emptied, " + deletedNotes + " notes deleted");
+    new AttachmentsGarbageCollectorTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
+
+}
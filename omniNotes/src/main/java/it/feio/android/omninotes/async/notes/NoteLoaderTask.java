@@ -19,21 +19,21 @@ package it.feio.android.omninotes.async.notes;
 import android.os.AsyncTask;
 import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.async.bus.NotesLoadedEvent;
-import it.feio.android.omninotes.db.DbHelper;
-import it.feio.android.omninotes.exceptions.NotesLoadingException;
+import it.feio.android.omninotes.db.NotePagingSource;
 import it.feio.android.omninotes.models.Note;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
 
 
-public class NoteLoaderTask extends AsyncTask<Object, Void, List<Note>> {
-
-  private static final String ERROR_RETRIEVING_NOTES = "Error retrieving notes";
+/**
+ * Loads the first page of notes from a {@link NotePagingSource}, following ones are loaded by
+ * {@link NotePageLoaderTask}
+ */
+public class NoteLoaderTask extends AsyncTask<NotePagingSource, Void, List<Note>> {
 
   private static NoteLoaderTask instance;
 
+  private NotePagingSource pagingSource;
+
   private NoteLoaderTask() {
   }
 
@@ -54,30 +54,9 @@ public class NoteLoaderTask extends AsyncTask<Object, Void, List<Note>> {
 
 
   @Override
-  protected List<Note> doInBackground(Object... params) {
-
-    String methodName = params[0].toString();
-    DbHelper db = DbHelper.getInstance();
-
-    if (params.length < 2 || params[1] == null) {
-      try {
-        Method method = db.getClass().getDeclaredMethod(methodName);
-        return (List<Note>) method.invoke(db);
-      } catch (NoSuchMethodException e) {
-        return new ArrayList<>();
-      } catch (IllegalAccessException | InvocationTargetException e) {
-        throw new NotesLoadingException(ERROR_RETRIEVING_NOTES, e);
-      }
-    } else {
-      Object methodArgs = params[1];
-      Class[] paramClass = new Class[]{methodArgs.getClass()};
-      try {
-        Method method = db.getClass().getDeclaredMethod(methodName, paramClass);
-        return (List<Note>) method.invoke(db, paramClass[0].cast(methodArgs));
-      } catch (Exception e) {
-        throw new NotesLoadingException(ERROR_RETRIEVING_NOTES, e);
-      }
-    }
+  protected List<Note> doInBackground(NotePagingSource... params) {
+    pagingSource = params[0];
+    return pagingSource.loadFirstPage();
   }
 
 
@@ -85,6 +64,6 @@ public class NoteLoaderTask extends AsyncTask<Object, Void, List<Note>> {
   protected void onPostExecute(List<Note> notes) {
 
     super.onPostExecute(notes);
-    EventBus.getDefault().post(new NotesLoadedEvent(notes));
+    EventBus.getDefault().post(new NotesLoadedEvent(notes, pagingSource));
   }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.async.notes;
+
+import android.os.AsyncTask;
+import de.greenrobot.event.EventBus;
+import it.feio.android.omninotes.async.bus.NotesPageLoadedEvent;
+import it.feio.android.omninotes.db.NotePagingSource;
+import it.feio.android.omninotes.models.Note;
+import java.util.List;
+
+
+/**
+ * Loads the next page of notes, or all the remaining ones, from a {@link NotePagingSource}. Must
+ * be executed serially to deliver pages in order.
+ */
+public class NotePageLoaderTask extends AsyncTask<Void, Void, List<Note>> {
+
+  private final NotePagingSource pagingSource;
+  private final boolean loadRemaining;
+
+
+  public NotePageLoaderTask(NotePagingSource pagingSource, boolean loadRemaining) {
+    this.pagingSource = pagingSource;
+    this.loadRemaining = loadRemaining;
+  }
+
+
+  @Override
+  protected List<Note> doInBackground(Void... params) {
+    return loadRemaining ? pagingSource.loadRemaining() : pagingSource.loadNextPage();
+  }
+
+
+  @Override
+  protected void onPostExecute(List<Note> notes) {
+    super.onPostExecute(notes);
+    EventBus.getDefault().post(new NotesPageLoadedEvent(notes, pagingSource));
+  }
+}
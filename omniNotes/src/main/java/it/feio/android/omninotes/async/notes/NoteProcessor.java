@@ -41,18 +41,29 @@ public abstract class NoteProcessor {
   }
 
 
-  protected abstract void processNote(Note note);
+  /**
+   * Processes all the notes together, preferring bulk database operations to per note ones
+   */
+  protected abstract void processNotes(List<Note> notes);
+
+
+  static List<Long> getIds(List<Note> notes) {
+    List<Long> ids = new ArrayList<>();
+    for (Note note : notes) {
+      ids.add(note.get_id());
+    }
+    return ids;
+  }
 
 
   class NotesProcessorTask extends AsyncTask<List<Note>, Void, List<Note>> {
 
     @Override
     protected List<Note> doInBackground(List<Note>... params) {
-      List<Note> processableNote = params[0];
-      for (Note note : processableNote) {
-        processNote(note);
-      }
-      return processableNote;
+      // Notes coming from lists are summaries: processors needing their whole content or
+      // attachments complete them, the others work on IDs only
+      processNotes(params[0]);
+      return params[0];
     }
 
 
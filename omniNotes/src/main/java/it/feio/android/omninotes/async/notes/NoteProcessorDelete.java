@@ -21,9 +21,10 @@ import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.async.bus.NotesDeletedEvent;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.AttachmentStore;
+import it.feio.android.omninotes.helpers.NotesHelper;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
-import it.feio.android.omninotes.utils.StorageHelper;
 import java.util.List;
 
 
@@ -45,13 +46,17 @@ public class NoteProcessorDelete extends NoteProcessor {
 
 
   @Override
-  protected void processNote(Note note) {
-    DbHelper db = DbHelper.getInstance();
-    if (db.deleteNote(note) && !keepAttachments) {
-      for (Attachment mAttachment : note.getAttachmentsList()) {
-        StorageHelper
-            .deleteExternalStoragePrivateFile(OmniNotes.getAppContext(), mAttachment.getUri()
-                .getLastPathSegment());
+  protected void processNotes(List<Note> notes) {
+    // Summaries are completed, before records are deleted, only when attachments must be released
+    List<Note> fullNotes = keepAttachments ? notes : NotesHelper.toFullNotes(notes);
+    // Attachments records are always deleted, only their files can be kept
+    DbHelper.getInstance().deleteNotes(getIds(notes), false);
+    // Files are released once records are deleted, so the ones shared with other notes are kept
+    if (!keepAttachments) {
+      for (Note note : fullNotes) {
+        for (Attachment mAttachment : note.getAttachmentsList()) {
+          AttachmentStore.release(OmniNotes.getAppContext(), mAttachment);
+        }
       }
     }
   }
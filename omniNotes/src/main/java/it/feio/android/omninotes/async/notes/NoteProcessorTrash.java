@@ -19,9 +19,11 @@ package it.feio.android.omninotes.async.notes;
 
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.NotesHelper;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.utils.ReminderHelper;
 import it.feio.android.omninotes.utils.ShortcutHelper;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -37,13 +39,21 @@ public class NoteProcessorTrash extends NoteProcessor {
 
 
   @Override
-  protected void processNote(Note note) {
-    if (trash) {
-      ShortcutHelper.removeShortcut(OmniNotes.getAppContext(), note);
-      ReminderHelper.removeReminder(OmniNotes.getAppContext(), note);
-    } else {
+  protected void processNotes(List<Note> notes) {
+    List<Note> notesWithReminder = new ArrayList<>();
+    for (Note note : notes) {
+      if (trash) {
+        ShortcutHelper.removeShortcut(OmniNotes.getAppContext(), note);
+        ReminderHelper.removeReminder(OmniNotes.getAppContext(), note);
+      } else if (note.getAlarm() != null) {
+        notesWithReminder.add(note);
+      }
+      note.setTrashed(trash);
+    }
+    DbHelper.getInstance().trashNotes(getIds(notes), trash);
+    // Reminders carry the whole note, shown when fired, so only their summaries are completed
+    for (Note note : NotesHelper.toFullNotes(notesWithReminder)) {
       ReminderHelper.addReminder(OmniNotes.getAppContext(), note);
     }
-    DbHelper.getInstance().trashNote(note, trash);
   }
 }
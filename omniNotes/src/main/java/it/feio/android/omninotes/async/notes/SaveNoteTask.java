@@ -21,13 +21,14 @@ import android.content.Context;
 import android.os.AsyncTask;
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.AttachmentStore;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.models.listeners.OnNoteSaved;
 import it.feio.android.omninotes.utils.ReminderHelper;
-import it.feio.android.omninotes.utils.StorageHelper;
 import it.feio.android.omninotes.utils.date.DateUtils;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -54,12 +55,13 @@ public class SaveNoteTask extends AsyncTask<Note, Void, Note> {
   @Override
   protected Note doInBackground(Note... params) {
     Note note = params[0];
-    purgeRemovedAttachments(note);
+    List<Attachment> removedAttachments = getRemovedAttachments(note);
     boolean reminderMustBeSet = DateUtils.isFuture(note.getAlarm());
     if (reminderMustBeSet) {
       note.setReminderFired(false);
     }
     note = DbHelper.getInstance().updateNote(note, updateLastModification);
+    purgeRemovedAttachments(removedAttachments);
     if (reminderMustBeSet) {
       ReminderHelper.addReminder(context, note);
     }
@@ -67,7 +69,7 @@ public class SaveNoteTask extends AsyncTask<Note, Void, Note> {
   }
 
 
-  private void purgeRemovedAttachments(Note note) {
+  private List<Attachment> getRemovedAttachments(Note note) {
     List<Attachment> deletedAttachments = note.getAttachmentsListOld();
     for (Attachment attachment : note.getAttachmentsList()) {
       if (attachment.getId() != null) {
@@ -78,9 +80,16 @@ public class SaveNoteTask extends AsyncTask<Note, Void, Note> {
         deletedAttachments.remove(attachment);
       }
     }
-    // Remove from database deleted attachments
+    return new ArrayList<>(deletedAttachments);
+  }
+
+
+  /**
+   * Files are deleted once the note is saved, so that files shared with other attachments are kept
+   */
+  private void purgeRemovedAttachments(List<Attachment> deletedAttachments) {
     for (Attachment deletedAttachment : deletedAttachments) {
-      StorageHelper.delete(context, deletedAttachment.getUri().getPath());
+      AttachmentStore.release(context, deletedAttachment);
       LogDelegate.d("Removed attachment " + deletedAttachment.getUri());
     }
   }
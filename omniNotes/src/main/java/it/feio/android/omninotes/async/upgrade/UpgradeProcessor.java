@@ -22,10 +22,13 @@ import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_AUDIO_EXT;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_FILES;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_IMAGE;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_VIDEO;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_NOTE_TAGS_REBUILD_PENDING;
 
 import android.content.ContentValues;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.text.TextUtils;
+import com.pixplicity.easyprefs.library.Prefs;
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
@@ -188,4 +191,17 @@ public class UpgradeProcessor {
     }
   }
 
+
+  /**
+   * Fills in the tags index. Processing runs before the upgrade scripts creating the table, so it's
+   * done in background: database will be available again only when the upgrade is completed. The
+   * rebuild is marked as pending in preferences, so that it's resumed on next app start if it
+   * didn't complete.
+   */
+  private void onUpgradeTo564() {
+    Prefs.edit().putBoolean(PREF_NOTE_TAGS_REBUILD_PENDING, true).commit();
+    AsyncTask.THREAD_POOL_EXECUTOR.execute(
+        () -> DbHelper.getInstance().rebuildNotesTagsIfPending());
+  }
+
 }
@@ -16,35 +16,39 @@
  */
 package it.feio.android.omninotes.db;
 
-import static it.feio.android.checklistview.interfaces.Constants.UNCHECKED_SYM;
 import static it.feio.android.omninotes.utils.Constants.DATABASE_NAME;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_AUDIO;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_FILES;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_IMAGE;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_SKETCH;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_VIDEO;
-import static it.feio.android.omninotes.utils.ConstantsBase.PREF_FILTER_ARCHIVED_IN_CATEGORIES;
-import static it.feio.android.omninotes.utils.ConstantsBase.PREF_FILTER_PAST_REMINDERS;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_NOTE_TAGS_REBUILD_PENDING;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SORTING_COLUMN;
 import static it.feio.android.omninotes.utils.ConstantsBase.TIMESTAMP_UNIX_EPOCH;
+import static it.feio.android.omninotes.utils.TextHelper.CONTENT_SUBSTRING_LENGTH;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.util.LruCache;
 import com.pixplicity.easyprefs.library.Prefs;
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.async.upgrade.UpgradeProcessor;
 import it.feio.android.omninotes.exceptions.DatabaseException;
 import it.feio.android.omninotes.helpers.LogDelegate;
-import it.feio.android.omninotes.helpers.NotesHelper;
+import it.feio.android.omninotes.helpers.count.CountFactory;
+import it.feio.android.omninotes.helpers.count.WordCounter;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Category;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteSummary;
 import it.feio.android.omninotes.models.Stats;
 import it.feio.android.omninotes.models.Tag;
 import it.feio.android.omninotes.utils.AssetUtils;
@@ -55,12 +59,14 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Objects;
-import java.util.regex.Pattern;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 
 
@@ -68,7 +74,7 @@ public class DbHelper extends SQLiteOpenHelper {
 
   // Database name
   // Database version aligned if possible to software version
-  private static final int DATABASE_VERSION = 560;
+  private static final int DATABASE_VERSION = 565;
   // Sql query file directory
   private static final String SQL_DIR = "sql";
 
@@ -103,6 +109,25 @@ public class DbHelper extends SQLiteOpenHelper {
   public static final String KEY_ATTACHMENT_MIME_TYPE = "mime_type";
   public static final String KEY_ATTACHMENT_NOTE_ID = "note_id";
 
+  // Notes full-text index table name
+  public static final String TABLE_NOTES_FTS = "notes_fts";
+  // Notes full-text index columns
+  public static final String KEY_FTS_DOCID = "docid";
+
+  // Navigation counters table name
+  public static final String TABLE_NAVIGATION_COUNTERS = "navigation_counters";
+  // Navigation counters columns
+  public static final String KEY_COUNTER_ARCHIVED = "archived";
+  public static final String KEY_COUNTER_TRASHED = "trashed";
+  public static final String KEY_COUNTER_UNCATEGORIZED = "uncategorized";
+  public static final String KEY_COUNTER_REMINDERS = "reminders";
+
+  // Notes tags index table name
+  public static final String TABLE_NOTE_TAGS = "note_tags";
+  // Notes tags index columns
+  public static final String KEY_NOTE_TAG_NOTE_ID = "note_id";
+  public static final String KEY_NOTE_TAG = "tag";
+
   // Categories table name
   public static final String TABLE_CATEGORY = "categories";
   // Categories table columns
@@ -111,6 +136,15 @@ public class DbHelper extends SQLiteOpenHelper {
   public static final String KEY_CATEGORY_DESCRIPTION = "description";
   public static final String KEY_CATEGORY_COLOR = "color";
 
+  // Max number of bound parameters used for each "IN" clause, kept below SQLite default limit
+  static final int QUERY_IN_CLAUSE_CHUNK_SIZE = 500;
+
+  // Number of columns selected for each note, before any additional one
+  private static final int NOTE_COLUMNS_COUNT = 18;
+
+  // Max number of compiled statements kept for single value queries
+  private static final int STATEMENTS_CACHE_SIZE = 16;
+
   // Queries
   private static final String CREATE_QUERY = "create.sql";
   private static final String UPGRADE_QUERY_PREFIX = "upgrade-";
@@ -122,6 +156,17 @@ public class DbHelper extends SQLiteOpenHelper {
   private static DbHelper instance = null;
   private SQLiteDatabase db;
 
+  private final LruCache<String, SQLiteStatement> statementsCache =
+      new LruCache<String, SQLiteStatement>(STATEMENTS_CACHE_SIZE) {
+        @Override
+        protected void entryRemoved(boolean evicted, String sql, SQLiteStatement oldStatement,
+            SQLiteStatement newStatement) {
+          oldStatement.close();
+        }
+      };
+  private SQLiteDatabase statementsDatabase;
+  private final DecryptedContentCache decryptedContents = new DecryptedContentCache();
+
 
   public static synchronized DbHelper getInstance() {
     return getInstance(OmniNotes.getAppContext());
@@ -147,7 +192,15 @@ public class DbHelper extends SQLiteOpenHelper {
 
 
   private DbHelper(Context mContext) {
-    super(mContext, DATABASE_NAME, null, DATABASE_VERSION);
+    this(mContext, null);
+  }
+
+
+  /**
+   * @param cursorFactory Factory of the cursors returned by queries, ex. to count them in tests
+   */
+  DbHelper(Context mContext, SQLiteDatabase.CursorFactory cursorFactory) {
+    super(mContext, DATABASE_NAME, cursorFactory, DATABASE_VERSION);
     this.mContext = mContext;
   }
 
@@ -168,6 +221,23 @@ public class DbHelper extends SQLiteOpenHelper {
     }
   }
 
+  @Override
+  public synchronized void close() {
+    synchronized (statementsCache) {
+      statementsCache.evictAll();
+      statementsDatabase = null;
+    }
+    super.close();
+  }
+
+  /**
+   * Must be called when password changes, since cached decrypted contents could not match anymore
+   * what's stored
+   */
+  public void invalidateDecryptedContents() {
+    decryptedContents.invalidate();
+  }
+
   @Override
   public void onOpen(SQLiteDatabase db) {
     db.disableWriteAheadLogging();
@@ -212,15 +282,20 @@ public class DbHelper extends SQLiteOpenHelper {
 
 
   public Note updateNote(Note note, boolean updateLastModification) {
+    if (note instanceof NoteSummary) {
+      throw new IllegalArgumentException("Note summaries can't be saved, full note is needed");
+    }
     db = getDatabase(true);
 
+    // To ensure note and attachments insertions are atomic and boost performances transaction are used
+    db.beginTransaction();
+
+    // Password is read inside the transaction: locked notes conversion stores the new one inside
+    // its own transaction, so content is never encrypted with a password being replaced
     String content = Boolean.TRUE.equals(note.isLocked())
         ? Security.encrypt(note.getContent(), Prefs.getString(PREF_PASSWORD, ""))
         : note.getContent();
 
-    // To ensure note and attachments insertions are atomic and boost performances transaction are used
-    db.beginTransaction();
-
     ContentValues values = new ContentValues();
     values.put(KEY_TITLE, note.getTitle());
     values.put(KEY_CONTENT, content);
@@ -245,6 +320,14 @@ public class DbHelper extends SQLiteOpenHelper {
     db.insertWithOnConflict(TABLE_NOTES, KEY_ID, values, SQLiteDatabase.CONFLICT_REPLACE);
     LogDelegate.d("Updated note titled '" + note.getTitle() + "'");
 
+    if (Boolean.TRUE.equals(note.isLocked())) {
+      decryptedContents.put(values.getAsLong(KEY_CREATION), lastModification, content,
+          note.getContent());
+    }
+
+    // Content is still plain text here, so locked notes tags are indexed too, as they're listed
+    updateNoteTags(db, values.getAsLong(KEY_CREATION), note.getTitle(), note.getContent());
+
     // Updating attachments
     List<Attachment> deletedAttachments = note.getAttachmentsListOld();
     for (Attachment attachment : note.getAttachmentsList()) {
@@ -270,6 +353,149 @@ public class DbHelper extends SQLiteOpenHelper {
   }
 
 
+  /**
+   * Saves many notes inside a single transaction, see {@link #updateNote(Note, boolean)}
+   */
+  public void updateNotes(List<Note> notes, boolean updateLastModification) {
+    SQLiteDatabase database = getDatabase(true);
+    database.beginTransaction();
+    try {
+      for (Note note : notes) {
+        updateNote(note, updateLastModification);
+      }
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+  }
+
+
+  private static void updateNoteTags(SQLiteDatabase db, long noteId, String title,
+      String content) {
+    String[] noteIdArgs = new String[]{String.valueOf(noteId)};
+    db.delete(TABLE_NOTE_TAGS, KEY_NOTE_TAG_NOTE_ID + " = ?", noteIdArgs);
+    ContentValues values = new ContentValues();
+    values.put(KEY_NOTE_TAG_NOTE_ID, noteId);
+    String text = StringUtils.defaultString(title) + " " + StringUtils.defaultString(content);
+    for (String tag : TagsHelper.retrieveTags(text).keySet()) {
+      values.put(KEY_NOTE_TAG, tag);
+      db.insertWithOnConflict(TABLE_NOTE_TAGS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+  }
+
+
+  /**
+   * Retrieves locked notes content as it's stored, so encrypted
+   *
+   * @return Contents by note ID
+   */
+  public Map<Long, String> getLockedNotesContents() {
+    Map<Long, String> contents = new LinkedHashMap<>();
+    String sql = "SELECT " + KEY_ID + "," + KEY_CONTENT + " FROM " + TABLE_NOTES
+        + " WHERE " + KEY_LOCKED + " = 1";
+    try (Cursor cursor = getDatabase().rawQuery(sql, null)) {
+      while (cursor.moveToNext()) {
+        contents.put(cursor.getLong(0), cursor.getString(1));
+      }
+    }
+    return contents;
+  }
+
+
+  /**
+   * Retrieves a note content as it's stored, so without decrypting it if the note is locked
+   */
+  public String getStoredContent(long noteId) {
+    String sql = "SELECT " + KEY_CONTENT + " FROM " + TABLE_NOTES + " WHERE " + KEY_ID + " = ?";
+    try (Cursor cursor = getDatabase()
+        .rawQuery(sql, new String[]{String.valueOf(noteId)})) {
+      return cursor.moveToFirst() ? cursor.getString(0) : null;
+    }
+  }
+
+
+  /**
+   * Replaces the content of many notes in a single transaction, ex. when they're encrypted again
+   * with a new password. Notes last modification isn't changed.
+   *
+   * @param contents Contents by note ID, already encrypted if notes stay locked
+   * @param locked Lock state of all the updated notes
+   */
+  public void updateNotesContents(Map<Long, String> contents, boolean locked) {
+    SQLiteDatabase database = getDatabase(true);
+    String sql = "UPDATE " + TABLE_NOTES + " SET " + KEY_CONTENT + " = ?, " + KEY_LOCKED + " = ?"
+        + " WHERE " + KEY_ID + " = ?";
+    database.beginTransaction();
+    try (SQLiteStatement statement = database.compileStatement(sql)) {
+      for (Entry<Long, String> content : contents.entrySet()) {
+        statement.clearBindings();
+        if (content.getValue() != null) {
+          statement.bindString(1, content.getValue());
+        }
+        statement.bindLong(2, locked ? 1 : 0);
+        statement.bindLong(3, content.getKey());
+        statement.executeUpdateDelete();
+      }
+      if (!locked) {
+        // Notes just unlocked are indexed again from their content. Re-encrypted or locked notes
+        // keep their tags, already indexed from the same plain text.
+        for (String[] args : toInClauseArgs(contents.keySet())) {
+          try (Cursor cursor = database.rawQuery("SELECT " + KEY_ID + "," + KEY_TITLE + " FROM "
+              + TABLE_NOTES + " WHERE " + KEY_ID + getInClause(args), args)) {
+            while (cursor.moveToNext()) {
+              updateNoteTags(database, cursor.getLong(0), cursor.getString(1),
+                  contents.get(cursor.getLong(0)));
+            }
+          }
+        }
+      }
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+    decryptedContents.invalidate();
+  }
+
+
+  /**
+   * Re-derives the tags index of all the notes, ex. when it's been just introduced by an upgrade
+   */
+  public void rebuildNotesTags() {
+    SQLiteDatabase database = getDatabase(true);
+    String sql = "SELECT " + KEY_ID + "," + KEY_TITLE + "," + KEY_CONTENT + "," + KEY_LOCKED
+        + "," + KEY_LAST_MODIFICATION + " FROM " + TABLE_NOTES;
+    database.beginTransaction();
+    try (Cursor cursor = database.rawQuery(sql, null)) {
+      database.delete(TABLE_NOTE_TAGS, null, null);
+      while (cursor.moveToNext()) {
+        // Locked notes are decrypted with current password, as when they're listed
+        String content = cursor.getInt(3) == 1
+            ? decryptedContents.decrypt(cursor.getLong(0), cursor.getLong(4), cursor.getString(2),
+            () -> Prefs.getString(PREF_PASSWORD, ""))
+            : cursor.getString(2);
+        updateNoteTags(database, cursor.getLong(0), cursor.getString(1), content);
+      }
+      database.setTransactionSuccessful();
+      LogDelegate.i("Rebuilt tags index of " + cursor.getCount() + " notes");
+    } finally {
+      database.endTransaction();
+    }
+  }
+
+
+  /**
+   * Rebuilds tags index if an upgrade requested it and it was not completed yet. The request is
+   * removed only after the rebuild has been committed, so it's repeated if the app is killed
+   * meanwhile.
+   */
+  public synchronized void rebuildNotesTagsIfPending() {
+    if (Prefs.getBoolean(PREF_NOTE_TAGS_REBUILD_PENDING, false)) {
+      rebuildNotesTags();
+      Prefs.edit().remove(PREF_NOTE_TAGS_REBUILD_PENDING).commit();
+    }
+  }
+
+
   private void execSqlFile(String sqlFile, SQLiteDatabase db) throws SQLException, IOException {
     LogDelegate.i("  exec sql file: {}" + sqlFile);
     for (String sqlInstruction : SqlParser
@@ -316,7 +542,8 @@ public class DbHelper extends SQLiteOpenHelper {
    * Getting single note
    */
   public Note getNote(long id) {
-    List<Note> notes = getNotes(" WHERE " + KEY_ID + " = " + id, true);
+    List<Note> notes = getNotes(" WHERE " + KEY_ID + " = ?", new String[]{String.valueOf(id)},
+        false);
     return notes.isEmpty() ? null : notes.get(0);
   }
 
@@ -329,56 +556,29 @@ public class DbHelper extends SQLiteOpenHelper {
    * @return Notes list
    */
   public List<Note> getAllNotes(Boolean checkNavigation) {
-    String whereCondition = "";
-    if (Boolean.TRUE.equals(checkNavigation)) {
-      int navigation = Navigation.getNavigation();
-      switch (navigation) {
-        case Navigation.NOTES:
-          return getNotesActive();
-        case Navigation.ARCHIVE:
-          return getNotesArchived();
-        case Navigation.REMINDERS:
-          return getNotesWithReminder(Prefs.getBoolean(PREF_FILTER_PAST_REMINDERS, false));
-        case Navigation.TRASH:
-          return getNotesTrashed();
-        case Navigation.UNCATEGORIZED:
-          return getNotesUncategorized();
-        case Navigation.CATEGORY:
-          return getNotesByCategory(Navigation.getCategory());
-        default:
-          return getNotes(whereCondition, true);
-      }
-    } else {
-      return getNotes(whereCondition, true);
-    }
-
+    return Boolean.TRUE.equals(checkNavigation)
+        ? getNotes(NoteQuery.forCurrentNavigation())
+        : getNotes(NoteQuery.forAllNotes());
   }
 
 
   public List<Note> getNotesActive() {
-    String whereCondition =
-        " WHERE " + KEY_ARCHIVED + " IS NOT 1 AND " + KEY_TRASHED + " IS NOT 1 ";
-    return getNotes(whereCondition, true);
+    return getNotes(NoteQuery.forNavigation(Navigation.NOTES));
   }
 
 
   public List<Note> getNotesArchived() {
-    String whereCondition = " WHERE " + KEY_ARCHIVED + " = 1 AND " + KEY_TRASHED + " IS NOT 1 ";
-    return getNotes(whereCondition, true);
+    return getNotes(NoteQuery.forNavigation(Navigation.ARCHIVE));
   }
 
 
   public List<Note> getNotesTrashed() {
-    String whereCondition = " WHERE " + KEY_TRASHED + " = 1 ";
-    return getNotes(whereCondition, true);
+    return getNotes(NoteQuery.forNavigation(Navigation.TRASH));
   }
 
 
   public List<Note> getNotesUncategorized() {
-    String whereCondition = " WHERE "
-        + "(" + KEY_CATEGORY_ID + " IS NULL OR " + KEY_CATEGORY_ID + " == 0) "
-        + "AND " + KEY_TRASHED + " IS NOT 1";
-    return getNotes(whereCondition, true);
+    return getNotes(NoteQuery.forNavigation(Navigation.UNCATEGORIZED));
   }
 
 
@@ -393,35 +593,280 @@ public class DbHelper extends SQLiteOpenHelper {
    * Common method for notes retrieval. It accepts a query to perform and returns matching records.
    */
   public List<Note> getNotes(String whereCondition, boolean order) {
-    List<Note> noteList = new ArrayList<>();
+    return getNotes(whereCondition, null, order);
+  }
 
-    String sortColumn = "";
-    String sortOrder = "";
 
-    // Getting sorting criteria from preferences. Reminder screen forces sorting.
-    if (Navigation.checkNavigation(Navigation.REMINDERS)) {
-      sortColumn = KEY_REMINDER;
-    } else {
-      sortColumn = Prefs.getString(PREF_SORTING_COLUMN, KEY_TITLE);
+  /**
+   * Same as {@link #getNotes(String, boolean)} with values bound to the condition placeholders
+   */
+  public List<Note> getNotes(String whereCondition, String[] args, boolean order) {
+    return queryNotes(getNotesQuery(whereCondition, order), args);
+  }
+
+
+  /**
+   * Retrieves notes described by a typed query
+   */
+  public List<Note> getNotes(NoteQuery noteQuery) {
+    return queryNotes(getNotesQuery("", noteQuery.getCondition(),
+        getOrderClause(noteQuery.getSortExpression(), noteQuery.isSortAscending())),
+        noteQuery.getArgs());
+  }
+
+
+  /**
+   * Retrieves notes using a full query built with {@link #getNotesQuery(String, String, String)}
+   */
+  List<Note> queryNotes(String query, String[] args) {
+    List<Note> noteList = new ArrayList<>();
+    LogDelegate.v("Query: " + query);
+
+    try (Cursor cursor = getDatabase().rawQuery(query, args)) {
+      while (cursor.moveToNext()) {
+        noteList.add(readNote(cursor));
+      }
     }
-    if (order) {
-      sortOrder =
-          KEY_TITLE.equals(sortColumn) || KEY_REMINDER.equals(sortColumn) ? " ASC " : " DESC ";
+
+    // Add eventual attachments
+    loadAttachments(noteList);
+
+    LogDelegate.v("Query: Retrieval finished!");
+    return noteList;
+  }
+
+
+  /**
+   * Retrieves notes with only the data needed to show them into lists, see {@link NoteSummary}
+   */
+  public List<Note> getNoteSummaries(String whereCondition, boolean order) {
+    return queryNoteSummaries(getNoteSummariesQuery("", whereCondition,
+        order ? getOrderClause(getSortExpression(), isSortAscending()) : ""), null);
+  }
+
+
+  /**
+   * Retrieves note summaries with the given IDs, in no particular order
+   */
+  public List<Note> getNoteSummariesById(Collection<Long> noteIds) {
+    List<Note> notes = new ArrayList<>();
+    for (String[] args : toInClauseArgs(noteIds)) {
+      notes.addAll(queryNoteSummaries(
+          getNoteSummariesQuery("", " WHERE " + KEY_ID + getInClause(args), ""), args));
     }
+    return notes;
+  }
 
-    // In case of title sorting criteria it must be handled empty title by concatenating content
-    sortColumn = KEY_TITLE.equals(sortColumn) ? KEY_TITLE + "||" + KEY_CONTENT : sortColumn;
 
-    // In case of reminder sorting criteria the empty reminder notes must be moved on bottom of results
-    sortColumn = KEY_REMINDER.equals(sortColumn) ? "IFNULL(" + KEY_REMINDER + ", " +
-        "" + TIMESTAMP_UNIX_EPOCH + ")" : sortColumn;
+  /**
+   * Retrieves only IDs and last modification of the notes matching the condition, sorted as
+   * {@link #getNoteSummaries(String, boolean)} does, so that callers already holding some of them
+   * can reload just the ones that changed
+   */
+  public Map<Long, Long> getNotesLastModification(String whereCondition, boolean order) {
+    Map<Long, Long> lastModifications = new LinkedHashMap<>();
+    String query = "SELECT " + KEY_CREATION + "," + KEY_LAST_MODIFICATION
+        + " FROM " + TABLE_NOTES
+        + " LEFT JOIN " + TABLE_CATEGORY + " USING( " + KEY_CATEGORY + ") "
+        + whereCondition
+        + (order ? getOrderClause(getSortExpression(), isSortAscending()) : "");
+    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+      while (cursor.moveToNext()) {
+        lastModifications.put(cursor.getLong(0), cursor.getLong(1));
+      }
+    }
+    return lastModifications;
+  }
 
-    // Generic query to be specialized with conditions passed as parameter
+
+  /**
+   * Retrieves all notes with only the columns describing their state (last modification, archived,
+   * trashed, locked, reminder and category), without title and content, so that locked notes don't
+   * need to be decrypted
+   */
+  public List<Note> getNotesState() {
+    List<Note> notes = new ArrayList<>();
     String query = "SELECT "
+        + KEY_CREATION + ","
+        + KEY_LAST_MODIFICATION + ","
+        + KEY_ARCHIVED + ","
+        + KEY_TRASHED + ","
+        + KEY_REMINDER + ","
+        + KEY_REMINDER_FIRED + ","
+        + KEY_LOCKED + ","
+        + KEY_CATEGORY + ","
+        + TABLE_CATEGORY + "." + KEY_CATEGORY_NAME + ","
+        + TABLE_CATEGORY + "." + KEY_CATEGORY_DESCRIPTION + ","
+        + TABLE_CATEGORY + "." + KEY_CATEGORY_COLOR
+        + " FROM " + TABLE_NOTES
+        + " LEFT JOIN " + TABLE_CATEGORY + " USING( " + KEY_CATEGORY + ") ";
+    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+      while (cursor.moveToNext()) {
+        int i = 0;
+        Note note = new Note();
+        note.setCreation(cursor.getLong(i++));
+        note.setLastModification(cursor.getLong(i++));
+        note.setArchived("1".equals(cursor.getString(i++)));
+        note.setTrashed("1".equals(cursor.getString(i++)));
+        note.setAlarm(cursor.getString(i++));
+        note.setReminderFired(cursor.getInt(i++));
+        note.setLocked("1".equals(cursor.getString(i++)));
+        long categoryId = cursor.getLong(i++);
+        if (categoryId != 0) {
+          note.setCategory(new Category(categoryId, cursor.getString(i++), cursor.getString(i++),
+              cursor.getString(i)));
+        }
+        notes.add(note);
+      }
+    }
+    return notes;
+  }
+
+
+  public List<Note> getNoteSummaries(NoteQuery noteQuery) {
+    return queryNoteSummaries(getNoteSummariesQuery("", noteQuery.getCondition(),
+        getOrderClause(noteQuery.getSortExpression(), noteQuery.isSortAscending())),
+        noteQuery.getArgs());
+  }
+
+
+  private List<Note> queryNoteSummaries(String query, String[] args) {
+    List<Note> noteList = new ArrayList<>();
+    LogDelegate.v("Query: " + query);
+    try (Cursor cursor = getDatabase().rawQuery(query, args)) {
+      while (cursor.moveToNext()) {
+        noteList.add(readNoteSummary(cursor));
+      }
+    }
+    return noteList;
+  }
+
+
+  /**
+   * Builds a note from the current cursor row, columns must be the ones selected by
+   * {@link #getNotesQuery(String, String, String)}
+   */
+  Note readNote(Cursor cursor) {
+    return readNote(cursor, new Note());
+  }
+
+
+  /**
+   * Builds a note summary from the current cursor row, columns must be the ones selected by
+   * {@link #getNoteSummariesQuery(String, String, String)}
+   */
+  NoteSummary readNoteSummary(Cursor cursor) {
+    NoteSummary noteSummary = readNote(cursor, new NoteSummary());
+    int i = NOTE_COLUMNS_COUNT;
+    ArrayList<Attachment> attachments = new ArrayList<>();
+    if (!cursor.isNull(i)) {
+      attachments.add(new Attachment(cursor.getLong(i++), Uri.parse(cursor.getString(i++)),
+          cursor.getString(i++), cursor.getInt(i++), (long) cursor.getInt(i++),
+          cursor.getString(i)));
+    }
+    noteSummary.setAttachmentsList(attachments);
+    return noteSummary;
+  }
+
+
+  private <T extends Note> T readNote(Cursor cursor, T note) {
+    int i = 0;
+    note.setCreation(cursor.getLong(i++));
+    note.setLastModification(cursor.getLong(i++));
+    note.setTitle(cursor.getString(i++));
+    note.setContent(cursor.getString(i++));
+    note.setArchived("1".equals(cursor.getString(i++)));
+    note.setTrashed("1".equals(cursor.getString(i++)));
+    note.setAlarm(cursor.getString(i++));
+    note.setReminderFired(cursor.getInt(i++));
+    note.setRecurrenceRule(cursor.getString(i++));
+    note.setLatitude(cursor.getString(i++));
+    note.setLongitude(cursor.getString(i++));
+    note.setAddress(cursor.getString(i++));
+    note.setLocked("1".equals(cursor.getString(i++)));
+    note.setChecklist("1".equals(cursor.getString(i++)));
+
+    // Eventual decryption of content
+    if (Boolean.TRUE.equals(note.isLocked())) {
+      note.setContent(decryptedContents.decrypt(note.getCreation(), note.getLastModification(),
+          note.getContent(), () -> Prefs.getString(PREF_PASSWORD, "")));
+    }
+
+    // Set category
+    long categoryId = cursor.getLong(i++);
+    if (categoryId != 0) {
+      Category category = new Category(categoryId, cursor.getString(i++),
+          cursor.getString(i++), cursor.getString(i));
+      note.setCategory(category);
+    }
+    return note;
+  }
+
+
+  /**
+   * Builds the notes retrieval query using the given condition and the sorting criteria from
+   * preferences
+   */
+  String getNotesQuery(String whereCondition, boolean order) {
+    return getNotesQuery("", whereCondition,
+        order ? getOrderClause(getSortExpression(), isSortAscending()) : "");
+  }
+
+
+  private String getOrderClause(String sortExpression, boolean ascending) {
+    return " ORDER BY " + sortExpression + " COLLATE NOCASE " + (ascending ? " ASC " : " DESC ");
+  }
+
+
+  /**
+   * Generic query to be specialized with conditions passed as parameter
+   *
+   * @param additionalColumns Columns selected after the ones read by {@link #readNote(Cursor)},
+   *                          each one preceded by a comma
+   */
+  String getNotesQuery(String additionalColumns, String whereCondition, String orderClause) {
+    return getNotesQuery(KEY_CONTENT, additionalColumns, "", whereCondition, orderClause);
+  }
+
+
+  /**
+   * Same as {@link #getNotesQuery(String, String, String)} but content is cut to the length shown
+   * by lists (apart from locked notes, whose encrypted content can't be truncated) and only the
+   * first attachment of each note is selected, with the columns read by
+   * {@link #readNoteSummary(Cursor)}
+   */
+  String getNoteSummariesQuery(String additionalColumns, String whereCondition,
+      String orderClause) {
+    // One more character than shown is kept to know when the preview must be ellipsized
+    String contentPreview = "CASE WHEN " + KEY_LOCKED + " = 1 THEN " + KEY_CONTENT
+        + " ELSE substr(ltrim(" + KEY_CONTENT + ", char(32, 9, 10, 13)), 1, "
+        + (CONTENT_SUBSTRING_LENGTH + 1) + ") END";
+    String firstAttachmentColumns = ","
+        + TABLE_ATTACHMENTS + "." + KEY_ATTACHMENT_ID + ","
+        + TABLE_ATTACHMENTS + "." + KEY_ATTACHMENT_URI + ","
+        + TABLE_ATTACHMENTS + "." + KEY_ATTACHMENT_NAME + ","
+        + TABLE_ATTACHMENTS + "." + KEY_ATTACHMENT_SIZE + ","
+        + TABLE_ATTACHMENTS + "." + KEY_ATTACHMENT_LENGTH + ","
+        + TABLE_ATTACHMENTS + "." + KEY_ATTACHMENT_MIME_TYPE;
+    String firstAttachmentJoin = " LEFT JOIN " + TABLE_ATTACHMENTS
+        + " ON " + TABLE_ATTACHMENTS + "." + KEY_ATTACHMENT_ID + " = ("
+        + "SELECT MIN(" + KEY_ATTACHMENT_ID + ") FROM " + TABLE_ATTACHMENTS
+        + " WHERE " + KEY_ATTACHMENT_NOTE_ID + " = " + TABLE_NOTES + "." + KEY_ID + ")";
+    return getNotesQuery(contentPreview, firstAttachmentColumns + additionalColumns,
+        firstAttachmentJoin, whereCondition, orderClause);
+  }
+
+
+  /**
+   * Category columns are qualified because attachments, eventually joined, have a name column too
+   */
+  private String getNotesQuery(String contentColumn, String additionalColumns, String joins,
+      String whereCondition, String orderClause) {
+    return "SELECT "
         + KEY_CREATION + ","
         + KEY_LAST_MODIFICATION + ","
         + KEY_TITLE + ","
-        + KEY_CONTENT + ","
+        + contentColumn + ","
         + KEY_ARCHIVED + ","
         + KEY_TRASHED + ","
         + KEY_REMINDER + ","
@@ -433,64 +878,53 @@ public class DbHelper extends SQLiteOpenHelper {
         + KEY_LOCKED + ","
         + KEY_CHECKLIST + ","
         + KEY_CATEGORY + ","
-        + KEY_CATEGORY_NAME + ","
-        + KEY_CATEGORY_DESCRIPTION + ","
-        + KEY_CATEGORY_COLOR
+        + TABLE_CATEGORY + "." + KEY_CATEGORY_NAME + ","
+        + TABLE_CATEGORY + "." + KEY_CATEGORY_DESCRIPTION + ","
+        + TABLE_CATEGORY + "." + KEY_CATEGORY_COLOR
+        + additionalColumns
         + " FROM " + TABLE_NOTES
         + " LEFT JOIN " + TABLE_CATEGORY + " USING( " + KEY_CATEGORY + ") "
+        + joins
         + whereCondition
-        + (order ? " ORDER BY " + sortColumn + " COLLATE NOCASE " + sortOrder : "");
+        + orderClause;
+  }
 
-    LogDelegate.v("Query: " + query);
 
-    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+  /**
+   * Getting sorting criteria from preferences. Reminder screen forces sorting.
+   */
+  private String getSortColumn() {
+    return Navigation.checkNavigation(Navigation.REMINDERS)
+        ? KEY_REMINDER
+        : Prefs.getString(PREF_SORTING_COLUMN, KEY_TITLE);
+  }
 
-      if (cursor.moveToFirst()) {
-        do {
-          int i = 0;
-          Note note = new Note();
-          note.setCreation(cursor.getLong(i++));
-          note.setLastModification(cursor.getLong(i++));
-          note.setTitle(cursor.getString(i++));
-          note.setContent(cursor.getString(i++));
-          note.setArchived("1".equals(cursor.getString(i++)));
-          note.setTrashed("1".equals(cursor.getString(i++)));
-          note.setAlarm(cursor.getString(i++));
-          note.setReminderFired(cursor.getInt(i++));
-          note.setRecurrenceRule(cursor.getString(i++));
-          note.setLatitude(cursor.getString(i++));
-          note.setLongitude(cursor.getString(i++));
-          note.setAddress(cursor.getString(i++));
-          note.setLocked("1".equals(cursor.getString(i++)));
-          note.setChecklist("1".equals(cursor.getString(i++)));
-
-          // Eventual decryption of content
-          if (Boolean.TRUE.equals(note.isLocked())) {
-            note.setContent(
-                Security.decrypt(note.getContent(), Prefs.getString(PREF_PASSWORD, "")));
-          }
 
-          // Set category
-          long categoryId = cursor.getLong(i++);
-          if (categoryId != 0) {
-            Category category = new Category(categoryId, cursor.getString(i++),
-                cursor.getString(i++), cursor.getString(i));
-            note.setCategory(category);
-          }
+  private String getSortExpression() {
+    return getSortExpression(getSortColumn());
+  }
 
-          // Add eventual attachments uri
-          note.setAttachmentsList(getNoteAttachments(note));
 
-          // Adding note to list
-          noteList.add(note);
+  private boolean isSortAscending() {
+    return isSortAscending(getSortColumn());
+  }
 
-        } while (cursor.moveToNext());
-      }
 
-    }
+  /**
+   * Expression used to sort notes by the given sorting criteria
+   */
+  static String getSortExpression(String sortColumn) {
+    // In case of title sorting criteria it must be handled empty title by concatenating content
+    sortColumn = KEY_TITLE.equals(sortColumn) ? KEY_TITLE + "||" + KEY_CONTENT : sortColumn;
 
-    LogDelegate.v("Query: Retrieval finished!");
-    return noteList;
+    // In case of reminder sorting criteria the empty reminder notes must be moved on bottom of results
+    return KEY_REMINDER.equals(sortColumn) ? "IFNULL(" + KEY_REMINDER + ", " +
+        "" + TIMESTAMP_UNIX_EPOCH + ")" : sortColumn;
+  }
+
+
+  static boolean isSortAscending(String sortColumn) {
+    return KEY_TITLE.equals(sortColumn) || KEY_REMINDER.equals(sortColumn);
   }
 
 
@@ -543,47 +977,153 @@ public class DbHelper extends SQLiteOpenHelper {
 
 
   /**
-   * Empties trash deleting all trashed notes
+   * Archives/restores many notes at once
+   */
+  public void archiveNotes(Collection<Long> noteIds, boolean archive) {
+    ContentValues values = new ContentValues();
+    values.put(KEY_ARCHIVED, archive);
+    updateNotes(noteIds, values);
+  }
+
+
+  /**
+   * Trashes/restores many notes at once
    */
-  public void emptyTrash() {
-    for (Note note : getNotesTrashed()) {
-      deleteNote(note);
+  public void trashNotes(Collection<Long> noteIds, boolean trash) {
+    ContentValues values = new ContentValues();
+    values.put(KEY_TRASHED, trash);
+    updateNotes(noteIds, values);
+  }
+
+
+  /**
+   * Moves many notes at once to a category, or removes them from their one if it's null
+   */
+  public void categorizeNotes(Collection<Long> noteIds, Category category) {
+    ContentValues values = new ContentValues();
+    if (category != null) {
+      values.put(KEY_CATEGORY, category.getId());
+    } else {
+      values.putNull(KEY_CATEGORY);
     }
+    updateNotes(noteIds, values);
   }
 
 
   /**
-   * Gets notes matching pattern with title or content text
+   * Deletes many notes at once, eventually keeping attachments
+   */
+  public void deleteNotes(Collection<Long> noteIds, boolean keepAttachments) {
+    SQLiteDatabase db = getDatabase(true);
+    db.beginTransaction();
+    try {
+      for (String[] args : toInClauseArgs(noteIds)) {
+        db.delete(TABLE_NOTES, KEY_ID + getInClause(args), args);
+        if (!keepAttachments) {
+          db.delete(TABLE_ATTACHMENTS, KEY_ATTACHMENT_NOTE_ID + getInClause(args), args);
+        }
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+
+  /**
+   * Updates the same columns of many notes with a statement every
+   * {@link #QUERY_IN_CLAUSE_CHUNK_SIZE} notes, all inside a single transaction. As for single
+   * notes archiving and trashing, last modification date is not changed.
+   */
+  private void updateNotes(Collection<Long> noteIds, ContentValues values) {
+    SQLiteDatabase db = getDatabase(true);
+    db.beginTransaction();
+    try {
+      for (String[] args : toInClauseArgs(noteIds)) {
+        db.update(TABLE_NOTES, values, KEY_ID + getInClause(args), args);
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+
+  /**
+   * Empties trash deleting all trashed notes together with their attachments records, inside a
+   * single transaction. Attachments files are left to the attachments garbage collector.
+   *
+   * @return Number of deleted notes
+   */
+  public int emptyTrash() {
+    SQLiteDatabase db = getDatabase(true);
+    db.beginTransaction();
+    try {
+      db.delete(TABLE_ATTACHMENTS, KEY_ATTACHMENT_NOTE_ID + " IN (SELECT " + KEY_ID
+          + " FROM " + TABLE_NOTES + " WHERE " + KEY_TRASHED + " = 1)", null);
+      int deleted = db.delete(TABLE_NOTES, KEY_TRASHED + " = 1", null);
+      db.setTransactionSuccessful();
+      return deleted;
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+
+  /**
+   * Tells if trash contains any locked note, without retrieving them
+   */
+  public boolean hasLockedNotesInTrash() {
+    return simpleQueryForLong("SELECT EXISTS(SELECT 1 FROM " + TABLE_NOTES
+        + " WHERE " + KEY_TRASHED + " = 1 AND " + KEY_LOCKED + " = 1)") == 1;
+  }
+
+
+  /**
+   * Gets notes matching pattern with title or content text, see {@link NoteQuery#forPattern(String)}
    *
    * @param pattern String to match with
    * @return Notes list
    */
   public List<Note> getNotesByPattern(String pattern) {
-    String escapedPattern = escapeSql(pattern);
-    int navigation = Navigation.getNavigation();
-    String whereCondition = " WHERE "
-        + KEY_TRASHED + (navigation == Navigation.TRASH ? " IS 1" : " IS NOT 1")
-        + (navigation == Navigation.ARCHIVE ? " AND " + KEY_ARCHIVED + " IS 1" : "")
-        + (navigation == Navigation.CATEGORY ? " AND " + KEY_CATEGORY + " = " + Navigation
-        .getCategory() : "")
-        + (navigation == Navigation.UNCATEGORIZED ? " AND (" + KEY_CATEGORY + " IS NULL OR "
-        + KEY_CATEGORY_ID
-        + " == 0) " : "")
-        + (Navigation.checkNavigation(Navigation.REMINDERS) ? " AND " + KEY_REMINDER
-        + " IS NOT NULL" : "")
-        + " AND ("
-        + " ( " + KEY_LOCKED + " IS NOT 1 AND (" + KEY_TITLE + " LIKE '%" + escapedPattern
-        + "%' ESCAPE '\\' " + " OR "
-        +
-        KEY_CONTENT + " LIKE '%" + escapedPattern + "%' ESCAPE '\\' ))"
-        + " OR ( " + KEY_LOCKED + " = 1 AND " + KEY_TITLE + " LIKE '%" + escapedPattern
-        + "%' ESCAPE '\\' )"
-        + ")";
-    return getNotes(whereCondition, true);
+    return getNotes(NoteQuery.forPattern(pattern));
   }
 
-  static String escapeSql(String pattern) {
-    return StringUtils.replace(pattern, "'", "''")
+
+  /**
+   * Converts a search pattern into a full-text query where every word must be matched as prefix.
+   * Words are split the same way the FTS "simple" tokenizer does: sequences of ASCII letters and
+   * digits or non-ASCII characters.
+   *
+   * @return Query to be used with MATCH operator or null if pattern has no indexable words
+   */
+  static String toFtsMatchQuery(String pattern) {
+    StringBuilder matchQuery = new StringBuilder();
+    int wordStart = -1;
+    for (int i = 0; i <= pattern.length(); i++) {
+      boolean wordChar = i < pattern.length() && isFtsTokenChar(pattern.charAt(i));
+      if (wordChar && wordStart < 0) {
+        wordStart = i;
+      } else if (!wordChar && wordStart >= 0) {
+        if (matchQuery.length() > 0) {
+          matchQuery.append(' ');
+        }
+        matchQuery.append('"').append(pattern, wordStart, i).append("*\"");
+        wordStart = -1;
+      }
+    }
+    return matchQuery.length() > 0 ? matchQuery.toString() : null;
+  }
+
+  private static boolean isFtsTokenChar(char c) {
+    return c >= 0x80 || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  /**
+   * Escapes LIKE wildcards, to be used with backslash as ESCAPE character
+   */
+  static String escapeLike(String pattern) {
+    return pattern.replace("\\", "\\\\")
         .replace("%", "\\%")
         .replace("_", "\\_");
   }
@@ -596,11 +1136,8 @@ public class DbHelper extends SQLiteOpenHelper {
    * @return Notes list
    */
   public List<Note> getNotesWithReminder(boolean filterPastReminders) {
-    String whereCondition = " WHERE " + KEY_REMINDER
-        + (filterPastReminders ? " >= " + Calendar.getInstance().getTimeInMillis() : " IS NOT NULL")
-        + " AND " + KEY_ARCHIVED + " IS NOT 1"
-        + " AND " + KEY_TRASHED + " IS NOT 1";
-    return getNotes(whereCondition, true);
+    return getNotes(NoteQuery.forNavigation(Navigation.REMINDERS)
+        .setFilterPastReminders(filterPastReminders));
   }
 
 
@@ -644,8 +1181,46 @@ public class DbHelper extends SQLiteOpenHelper {
    * Retrieves all attachments related to specific note
    */
   public ArrayList<Attachment> getNoteAttachments(Note note) {
-    String whereCondition = " WHERE " + KEY_ATTACHMENT_NOTE_ID + " = " + note.get_id();
-    return getAttachments(whereCondition);
+    String whereCondition = " WHERE " + KEY_ATTACHMENT_NOTE_ID + " = ?";
+    return getAttachments(whereCondition, new String[]{String.valueOf(note.get_id())});
+  }
+
+
+  /**
+   * Fills the given notes with their attachments retrieving them with a query every
+   * {@link #QUERY_IN_CLAUSE_CHUNK_SIZE} notes instead of one per note
+   */
+  void loadAttachments(List<Note> notes) {
+    Map<Long, ArrayList<Attachment>> attachmentsByNote = new LinkedHashMap<>();
+    for (Note note : notes) {
+      attachmentsByNote.put(note.get_id(), new ArrayList<>());
+    }
+
+    for (String[] args : toInClauseArgs(attachmentsByNote.keySet())) {
+      String sql = "SELECT "
+          + KEY_ATTACHMENT_ID + ","
+          + KEY_ATTACHMENT_URI + ","
+          + KEY_ATTACHMENT_NAME + ","
+          + KEY_ATTACHMENT_SIZE + ","
+          + KEY_ATTACHMENT_LENGTH + ","
+          + KEY_ATTACHMENT_MIME_TYPE + ","
+          + KEY_ATTACHMENT_NOTE_ID
+          + " FROM " + TABLE_ATTACHMENTS
+          + " WHERE " + KEY_ATTACHMENT_NOTE_ID + getInClause(args)
+          + " ORDER BY " + KEY_ATTACHMENT_NOTE_ID + ", " + KEY_ATTACHMENT_ID;
+
+      try (Cursor cursor = getDatabase().rawQuery(sql, args)) {
+        while (cursor.moveToNext()) {
+          attachmentsByNote.get(cursor.getLong(6)).add(new Attachment(cursor.getLong(0),
+              Uri.parse(cursor.getString(1)), cursor.getString(2), cursor.getInt(3),
+              (long) cursor.getInt(4), cursor.getString(5)));
+        }
+      }
+    }
+
+    for (Note note : notes) {
+      note.setAttachmentsList(attachmentsByNote.get(note.get_id()));
+    }
   }
 
 
@@ -668,19 +1243,7 @@ public class DbHelper extends SQLiteOpenHelper {
    * @return List of notes with requested category
    */
   public List<Note> getNotesByCategory(Long categoryId) {
-    List<Note> notes;
-    boolean filterArchived = Prefs
-        .getBoolean(PREF_FILTER_ARCHIVED_IN_CATEGORIES + categoryId, false);
-    try {
-      String whereCondition = " WHERE "
-          + KEY_CATEGORY_ID + " = " + categoryId
-          + " AND " + KEY_TRASHED + " IS NOT 1"
-          + (filterArchived ? " AND " + KEY_ARCHIVED + " IS NOT 1" : "");
-      notes = getNotes(whereCondition, true);
-    } catch (NumberFormatException e) {
-      notes = getAllNotes(true);
-    }
-    return notes;
+    return getNotes(NoteQuery.forCategory(categoryId));
   }
 
 
@@ -693,32 +1256,24 @@ public class DbHelper extends SQLiteOpenHelper {
 
 
   /**
-   * Retrieves all tags of a specified note
+   * Retrieves all tags of a specified note, counting the notes tagged by each of them
    */
   public List<Tag> getTags(Note note) {
     List<Tag> tags = new ArrayList<>();
-    HashMap<String, Integer> tagsMap = new HashMap<>();
-
-    String whereCondition = " WHERE "
-        + (note != null ? KEY_ID + " = " + note.get_id() + " AND " : "")
-        + "(" + KEY_CONTENT + " LIKE '%#%' OR " + KEY_TITLE + " LIKE '%#%' " + ")"
-        + " AND " + KEY_TRASHED + " IS " + (Navigation.checkNavigation(Navigation.TRASH) ? ""
-        : " NOT ") + " 1";
-    List<Note> notesRetrieved = getNotes(whereCondition, true);
-
-    for (Note noteRetrieved : notesRetrieved) {
-      HashMap<String, Integer> tagsRetrieved = TagsHelper.retrieveTags(noteRetrieved);
-      for (String s : tagsRetrieved.keySet()) {
-        int count = tagsMap.get(s) == null ? 0 : tagsMap.get(s);
-        tagsMap.put(s, ++count);
+    String sql = "SELECT " + KEY_NOTE_TAG + ", COUNT(*)"
+        + " FROM " + TABLE_NOTE_TAGS
+        + " JOIN " + TABLE_NOTES + " ON " + KEY_ID + " = " + KEY_NOTE_TAG_NOTE_ID
+        + " WHERE " + (note != null ? KEY_NOTE_TAG_NOTE_ID + " = ? AND " : "")
+        + KEY_TRASHED + " IS " + (Navigation.checkNavigation(Navigation.TRASH) ? "" : "NOT ") + "1"
+        + " GROUP BY " + KEY_NOTE_TAG;
+    String[] args = note != null ? new String[]{String.valueOf(note.get_id())} : null;
+
+    try (Cursor cursor = getDatabase().rawQuery(sql, args)) {
+      while (cursor.moveToNext()) {
+        tags.add(new Tag(cursor.getString(0), cursor.getInt(1)));
       }
     }
 
-    for (Entry<String, Integer> entry : tagsMap.entrySet()) {
-      Tag tag = new Tag(entry.getKey(), entry.getValue());
-      tags.add(tag);
-    }
-
     Collections.sort(tags, (tag1, tag2) -> tag1.getText().compareToIgnoreCase(tag2.getText()));
     return tags;
   }
@@ -736,49 +1291,41 @@ public class DbHelper extends SQLiteOpenHelper {
   }
 
 
+  /**
+   * Retrieves notes with the given IDs, in no particular order
+   */
+  public List<Note> getNotesById(Collection<Long> noteIds) {
+    List<Note> notes = new ArrayList<>();
+    for (String[] args : toInClauseArgs(noteIds)) {
+      notes.addAll(queryNotes(getNotesQuery(" WHERE " + KEY_ID + getInClause(args), false), args));
+    }
+    return notes;
+  }
+
+
+  /**
+   * Retrieves a page of notes sorted by ID, starting right after the given one, to go through all
+   * of them without loading them at once
+   */
+  public List<Note> getNotesPage(long afterId, int limit) {
+    return queryNotes(getNotesQuery("", " WHERE " + KEY_ID + " > ?",
+        " ORDER BY " + KEY_ID + " LIMIT " + limit), new String[]{String.valueOf(afterId)});
+  }
+
+
   /**
    * Retrieves all notes with specified tags
    */
   public List<Note> getNotesByTag(String[] tags) {
-    StringBuilder whereCondition = new StringBuilder();
-    whereCondition.append(" WHERE ");
-    for (int i = 0; i < tags.length; i++) {
-      if (i != 0) {
-        whereCondition.append(" AND ");
-      }
-      whereCondition.append("(" + KEY_CONTENT + " LIKE '%").append(tags[i]).append("%' OR ")
-          .append(KEY_TITLE)
-          .append(" LIKE '%").append(tags[i]).append("%')");
-    }
-    // Trashed notes must be included in search results only if search if performed from trash
-    whereCondition.append(" AND " + KEY_TRASHED + " IS ")
-        .append(Navigation.checkNavigation(Navigation.TRASH) ?
-            "" : "" +
-            " NOT ").append(" 1");
-
-    return rx.Observable.from(getNotes(whereCondition.toString(), true))
-        .map(note -> {
-          boolean matches = rx.Observable.from(tags)
-              .all(tag -> {
-                Pattern p = Pattern.compile(".*(\\s|^)" + tag + "(\\s|$).*",
-                    Pattern.MULTILINE);
-                return p.matcher(
-                    (note.getTitle() + " " + note.getContent())).find();
-              }).toBlocking().single();
-          return matches ? note : null;
-        })
-        .filter(Objects::nonNull)
-        .toList().toBlocking().single();
+    return getNotes(NoteQuery.forTags(tags));
   }
 
+
   /**
    * Retrieves all uncompleted checklists
    */
   public List<Note> getNotesByUncompleteChecklist() {
-    String whereCondition =
-        " WHERE " + KEY_CHECKLIST + " = 1 AND " + KEY_CONTENT + " LIKE '%" + UNCHECKED_SYM + "%' AND "
-    + KEY_TRASHED + (Navigation.checkNavigation(Navigation.TRASH) ? " IS 1" : " IS NOT 1");
-    return getNotes(whereCondition, true);
+    return getNotes(NoteQuery.forUncompleteChecklists());
   }
 
 
@@ -790,12 +1337,51 @@ public class DbHelper extends SQLiteOpenHelper {
   }
 
 
+  /**
+   * Retrieves names of the files referenced by attachments
+   */
+  public Set<String> getAttachmentsFileNames() {
+    Set<String> fileNames = new HashSet<>();
+    String sql = "SELECT " + KEY_ATTACHMENT_URI + " FROM " + TABLE_ATTACHMENTS;
+    try (Cursor cursor = getDatabase().rawQuery(sql, null)) {
+      while (cursor.moveToNext()) {
+        String fileName = cursor.isNull(0) ? null : Uri.parse(cursor.getString(0))
+            .getLastPathSegment();
+        if (fileName != null) {
+          fileNames.add(fileName);
+        }
+      }
+    }
+    return fileNames;
+  }
+
+
+  /**
+   * Counts attachments referencing a file, which can be shared by many of them when attachments
+   * are stored by content
+   */
+  public int getAttachmentReferencesCount(Uri uri) {
+    String sql = "SELECT COUNT(*)"
+        + " FROM " + TABLE_ATTACHMENTS
+        + " WHERE " + KEY_ATTACHMENT_URI + " = ?";
+    return (int) simpleQueryForLong(sql, uri.toString());
+  }
+
+
   /**
    * Retrieves attachments using a condition passed as parameter
    *
    * @return List of attachments
    */
   public ArrayList<Attachment> getAttachments(String whereCondition) {
+    return getAttachments(whereCondition, null);
+  }
+
+
+  /**
+   * Same as {@link #getAttachments(String)} with values bound to the condition placeholders
+   */
+  public ArrayList<Attachment> getAttachments(String whereCondition, String[] args) {
 
     ArrayList<Attachment> attachmentsList = new ArrayList<>();
     String sql = "SELECT "
@@ -812,7 +1398,7 @@ public class DbHelper extends SQLiteOpenHelper {
 
     try {
 
-      cursor = getDatabase().rawQuery(sql, null);
+      cursor = getDatabase().rawQuery(sql, args);
 
       // Looping through all rows and adding to list
       if (cursor.moveToFirst()) {
@@ -936,9 +1522,9 @@ public class DbHelper extends SQLiteOpenHelper {
         + KEY_CATEGORY_DESCRIPTION + ","
         + KEY_CATEGORY_COLOR
         + " FROM " + TABLE_CATEGORY
-        + " WHERE " + KEY_CATEGORY_ID + " = " + id;
+        + " WHERE " + KEY_CATEGORY_ID + " = ?";
 
-    try (Cursor cursor = getDatabase().rawQuery(sql, null)) {
+    try (Cursor cursor = getDatabase().rawQuery(sql, new String[]{String.valueOf(id)})) {
 
       if (cursor.moveToFirst()) {
         category = new Category(cursor.getLong(0), cursor.getString(1),
@@ -951,102 +1537,150 @@ public class DbHelper extends SQLiteOpenHelper {
 
 
   public int getCategorizedCount(Category category) {
-    int count = 0;
     String sql = "SELECT COUNT(*)"
         + " FROM " + TABLE_NOTES
-        + " WHERE " + KEY_CATEGORY + " = " + category.getId();
+        + " WHERE " + KEY_CATEGORY + " = ?";
+    return (int) simpleQueryForLong(sql, category.getId());
+  }
 
-    try (Cursor cursor = getDatabase().rawQuery(sql, null)) {
-      if (cursor.moveToFirst()) {
-        count = cursor.getInt(0);
+
+  /**
+   * Performs a query returning a single number, like counts or lookups by ID. Compiled statements
+   * of the most recent queries are kept and reused, so callers must use placeholders for values.
+   *
+   * @throws android.database.sqlite.SQLiteDoneException if the query returns no rows
+   */
+  long simpleQueryForLong(String sql, Object... args) {
+    synchronized (statementsCache) {
+      SQLiteDatabase database = getDatabase();
+      // Statements are bound to the database they were compiled by
+      if (database != statementsDatabase) {
+        statementsCache.evictAll();
+        statementsDatabase = database;
       }
+      SQLiteStatement statement = statementsCache.get(sql);
+      if (statement == null) {
+        statement = database.compileStatement(sql);
+        statementsCache.put(sql, statement);
+      }
+      statement.clearBindings();
+      for (int i = 0; i < args.length; i++) {
+        DatabaseUtils.bindObjectToProgram(statement, i + 1, args[i]);
+      }
+      return statement.simpleQueryForLong();
     }
-    return count;
   }
 
 
   /**
-   * Retrieves statistics data based on app usage
+   * Retrieves one of the notes counters shown by dynamic navigation menu. They're kept up to date
+   * by triggers on notes table, so reading them doesn't depend on notes number.
+   *
+   * @param counter One of the navigation counters table columns
+   */
+  public int getNavigationCounter(String counter) {
+    return (int) simpleQueryForLong("SELECT " + counter + " FROM " + TABLE_NAVIGATION_COUNTERS);
+  }
+
+
+  /**
+   * Splits IDs into groups of at most {@link #QUERY_IN_CLAUSE_CHUNK_SIZE} arguments to be bound to
+   * {@link #getInClause(String[])}
+   */
+  private static List<String[]> toInClauseArgs(Collection<Long> ids) {
+    List<String[]> chunks = new ArrayList<>();
+    List<Long> idsList = new ArrayList<>(ids);
+    for (int from = 0; from < idsList.size(); from += QUERY_IN_CLAUSE_CHUNK_SIZE) {
+      List<Long> chunk = idsList.subList(from,
+          Math.min(from + QUERY_IN_CLAUSE_CHUNK_SIZE, idsList.size()));
+      String[] args = new String[chunk.size()];
+      for (int i = 0; i < chunk.size(); i++) {
+        args[i] = String.valueOf(chunk.get(i));
+      }
+      chunks.add(args);
+    }
+    return chunks;
+  }
+
+
+  private static String getInClause(String[] args) {
+    return " IN (" + StringUtils.repeat("?", ",", args.length) + ")";
+  }
+
+
+  /**
+   * Retrieves statistics data based on app usage. Counters are aggregated by SQL while texts are
+   * streamed one note at a time through a cursor, so memory usage doesn't depend on notes number.
    */
   public Stats getStats() {
     Stats mStats = new Stats();
 
     // Categories
-    mStats.setCategories(getCategories().size());
-
-    // Everything about notes and their text stats
-    int notesActive = 0;
-    int notesArchived = 0;
-    int notesTrashed = 0;
-    int reminders = 0;
-    int remindersFuture = 0;
-    int checklists = 0;
-    int notesMasked = 0;
+    mStats.setCategories((int) simpleQueryForLong("SELECT COUNT(*) FROM " + TABLE_CATEGORY));
+
+    // Everything about notes flags
+    String now = String.valueOf(Calendar.getInstance().getTimeInMillis());
+    String notesCountersQuery = "SELECT "
+        + "COUNT(*),"
+        + "SUM(" + KEY_TRASHED + " = 1),"
+        + "SUM(" + KEY_TRASHED + " IS NOT 1 AND " + KEY_ARCHIVED + " = 1),"
+        + "SUM(" + KEY_REMINDER + " > 0 AND " + KEY_REMINDER + " <= ?),"
+        + "SUM(" + KEY_REMINDER + " > 0 AND " + KEY_REMINDER + " > ?),"
+        + "SUM(" + KEY_CHECKLIST + " = 1),"
+        + "SUM(" + KEY_LOCKED + " = 1),"
+        + "SUM(" + KEY_LONGITUDE + " IS NOT NULL AND " + KEY_LONGITUDE + " != 0)"
+        + " FROM " + TABLE_NOTES;
+    int notesCount = 0;
+    try (Cursor cursor = getDatabase().rawQuery(notesCountersQuery, new String[]{now, now})) {
+      if (cursor.moveToFirst()) {
+        notesCount = cursor.getInt(0);
+        mStats.setNotesTrashed(cursor.getInt(1));
+        mStats.setNotesArchived(cursor.getInt(2));
+        mStats.setNotesActive(notesCount - cursor.getInt(1) - cursor.getInt(2));
+        mStats.setReminders(cursor.getInt(3));
+        mStats.setRemindersFutures(cursor.getInt(4));
+        mStats.setNotesChecklist(cursor.getInt(5));
+        mStats.setNotesMasked(cursor.getInt(6));
+        mStats.setLocation(cursor.getInt(7));
+      }
+    }
+
+    // Everything about notes texts
     int tags = 0;
-    int locations = 0;
     int totalWords = 0;
     int totalChars = 0;
     int maxWords = 0;
     int maxChars = 0;
-    int avgWords;
-    int avgChars;
-    int words;
-    int chars;
-    List<Note> notes = getAllNotes(false);
-    for (Note note : notes) {
-      if (note.isTrashed()) {
-        notesTrashed++;
-      } else if (note.isArchived()) {
-        notesArchived++;
-      } else {
-        notesActive++;
-      }
-      if (note.getAlarm() != null && Long.parseLong(note.getAlarm()) > 0) {
-        if (Long.parseLong(note.getAlarm()) > Calendar.getInstance().getTimeInMillis()) {
-          remindersFuture++;
-        } else {
-          reminders++;
-        }
-      }
-      if (note.isChecklist()) {
-        checklists++;
-      }
-      if (note.isLocked()) {
-        notesMasked++;
-      }
-      tags += TagsHelper.retrieveTags(note).size();
-      if (note.getLongitude() != null && note.getLongitude() != 0) {
-        locations++;
+    WordCounter wordCounter = CountFactory.getWordCounter();
+    String textsQuery = "SELECT " + KEY_TITLE + "," + KEY_CONTENT + "," + KEY_LOCKED + ","
+        + KEY_CHECKLIST + "," + KEY_ID + "," + KEY_LAST_MODIFICATION + " FROM " + TABLE_NOTES;
+    try (Cursor cursor = getDatabase().rawQuery(textsQuery, null)) {
+      while (cursor.moveToNext()) {
+        Note note = new Note();
+        note.setTitle(cursor.getString(0));
+        note.setLocked(cursor.getInt(2) == 1);
+        note.setContent(Boolean.TRUE.equals(note.isLocked())
+            ? decryptedContents.decrypt(cursor.getLong(4), cursor.getLong(5), cursor.getString(1),
+            () -> Prefs.getString(PREF_PASSWORD, ""))
+            : cursor.getString(1));
+        note.setChecklist(cursor.getInt(3) == 1);
+
+        tags += TagsHelper.retrieveTags(note).size();
+        int words = wordCounter.countWords(note);
+        int chars = wordCounter.countChars(note);
+        maxWords = Math.max(words, maxWords);
+        maxChars = Math.max(chars, maxChars);
+        totalWords += words;
+        totalChars += chars;
       }
-      words = NotesHelper.getWords(note);
-      chars = NotesHelper.getChars(note);
-      if (words > maxWords) {
-        maxWords = words;
-      }
-      if (chars > maxChars) {
-        maxChars = chars;
-      }
-      totalWords += words;
-      totalChars += chars;
     }
-    mStats.setNotesActive(notesActive);
-    mStats.setNotesArchived(notesArchived);
-    mStats.setNotesTrashed(notesTrashed);
-    mStats.setReminders(reminders);
-    mStats.setRemindersFutures(remindersFuture);
-    mStats.setNotesChecklist(checklists);
-    mStats.setNotesMasked(notesMasked);
     mStats.setTags(tags);
-    mStats.setLocation(locations);
-    avgWords = totalWords / (!notes.isEmpty() ? notes.size() : 1);
-    avgChars = totalChars / (!notes.isEmpty() ? notes.size() : 1);
-
     mStats.setWords(totalWords);
     mStats.setWordsMax(maxWords);
-    mStats.setWordsAvg(avgWords);
+    mStats.setWordsAvg(totalWords / Math.max(notesCount, 1));
     mStats.setChars(totalChars);
     mStats.setCharsMax(maxChars);
-    mStats.setCharsAvg(avgChars);
+    mStats.setCharsAvg(totalChars / Math.max(notesCount, 1));
 
     // Everything about attachments
     int attachmentsAll = 0;
@@ -1055,19 +1689,25 @@ public class DbHelper extends SQLiteOpenHelper {
     int audioRecordings = 0;
     int sketches = 0;
     int files = 0;
-
-    List<Attachment> attachments = getAllAttachments();
-    for (Attachment attachment : attachments) {
-      if (MIME_TYPE_IMAGE.equals(attachment.getMime_type())) {
-        images++;
-      } else if (MIME_TYPE_VIDEO.equals(attachment.getMime_type())) {
-        videos++;
-      } else if (MIME_TYPE_AUDIO.equals(attachment.getMime_type())) {
-        audioRecordings++;
-      } else if (MIME_TYPE_SKETCH.equals(attachment.getMime_type())) {
-        sketches++;
-      } else if (MIME_TYPE_FILES.equals(attachment.getMime_type())) {
-        files++;
+    String attachmentsCountersQuery = "SELECT " + KEY_ATTACHMENT_MIME_TYPE + ", COUNT(*)"
+        + " FROM " + TABLE_ATTACHMENTS
+        + " GROUP BY " + KEY_ATTACHMENT_MIME_TYPE;
+    try (Cursor cursor = getDatabase().rawQuery(attachmentsCountersQuery, null)) {
+      while (cursor.moveToNext()) {
+        String mimeType = cursor.getString(0);
+        int count = cursor.getInt(1);
+        attachmentsAll += count;
+        if (MIME_TYPE_IMAGE.equals(mimeType)) {
+          images = count;
+        } else if (MIME_TYPE_VIDEO.equals(mimeType)) {
+          videos = count;
+        } else if (MIME_TYPE_AUDIO.equals(mimeType)) {
+          audioRecordings = count;
+        } else if (MIME_TYPE_SKETCH.equals(mimeType)) {
+          sketches = count;
+        } else if (MIME_TYPE_FILES.equals(mimeType)) {
+          files = count;
+        }
       }
     }
     mStats.setAttachments(attachmentsAll);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import android.util.LruCache;
+import it.feio.android.omninotes.utils.Security;
+
+
+/**
+ * Bounded cache of locked notes decrypted content, so that reloading lists doesn't decrypt again
+ * notes that didn't change. Entries are checked against note last modification and encrypted
+ * content, so a note saved again with a different content is never served stale.
+ */
+class DecryptedContentCache {
+
+  // Total number of cached decrypted chars
+  private static final int MAX_SIZE = 512 * 1024;
+
+  private final LruCache<Long, Entry> entries = new LruCache<Long, Entry>(MAX_SIZE) {
+    @Override
+    protected int sizeOf(Long noteId, Entry entry) {
+      return Math.max(entry.decrypted.length(), 1);
+    }
+  };
+
+
+  /**
+   * Returns the decrypted content of a note, decrypting it with the given password only if not
+   * already cached
+   */
+  String decrypt(long noteId, long lastModification, String encrypted, PasswordProvider password) {
+    Entry entry = entries.get(noteId);
+    if (entry != null && entry.lastModification == lastModification
+        && entry.encrypted.equals(encrypted)) {
+      return entry.decrypted;
+    }
+    String decrypted = Security.decrypt(encrypted, password.get());
+    // Failed decryptions return the content as it is and must be retried next time
+    if (decrypted != null && !decrypted.equals(encrypted)) {
+      put(noteId, lastModification, encrypted, decrypted);
+    }
+    return decrypted;
+  }
+
+
+  /**
+   * Stores an already known decrypted content, ex. when a locked note is being saved
+   */
+  void put(long noteId, long lastModification, String encrypted, String decrypted) {
+    if (encrypted != null && decrypted != null) {
+      entries.put(noteId, new Entry(lastModification, encrypted, decrypted));
+    }
+  }
+
+
+  void invalidate() {
+    entries.evictAll();
+  }
+
+
+  /**
+   * Password is retrieved only when a decryption is actually needed
+   */
+  interface PasswordProvider {
+
+    String get();
+  }
+
+
+  private static class Entry {
+
+    private final long lastModification;
+    private final String encrypted;
+    private final String decrypted;
+
+
+    private Entry(long lastModification, String encrypted, String decrypted) {
+      this.lastModification = lastModification;
+      this.encrypted = encrypted;
+      this.decrypted = decrypted;
+    }
+  }
+
+}
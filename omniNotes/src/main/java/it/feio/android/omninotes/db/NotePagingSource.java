@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.db.DbHelper.KEY_CREATION;
+
+import android.database.Cursor;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Loads notes matching a {@link NoteQuery} one page at a time. Keyset pagination is used: every page
+ * starts right after the sorting value (and note ID, to break ties) of the last loaded note, so
+ * each page is a cheap query whatever its distance from the list top.
+ * <p>
+ * Notes are loaded as {@link it.feio.android.omninotes.models.NoteSummary}.
+ */
+public class NotePagingSource {
+
+  public static final int PAGE_SIZE = 50;
+
+  private static final String SORT_KEY_ALIAS = "sort_key";
+
+  private final DbHelper dbHelper;
+  private final NoteQuery noteQuery;
+  private final String sortExpression;
+  private final boolean ascending;
+
+  private int firstPageSize = PAGE_SIZE;
+  private boolean started;
+  private Object lastSortKey;
+  private long lastId;
+  private boolean endReached;
+
+
+  public NotePagingSource(NoteQuery noteQuery) {
+    this.dbHelper = DbHelper.getInstance();
+    this.noteQuery = noteQuery;
+    this.sortExpression = noteQuery.getSortExpression();
+    this.ascending = noteQuery.isSortAscending();
+  }
+
+
+  /**
+   * Sets the minimum number of notes of the first page, ex. to be able to restore a scrolling
+   * position
+   */
+  public NotePagingSource setFirstPageSize(int firstPageSize) {
+    this.firstPageSize = Math.max(firstPageSize, PAGE_SIZE);
+    return this;
+  }
+
+
+  public List<Note> loadFirstPage() {
+    return loadNextPage(firstPageSize);
+  }
+
+
+  public List<Note> loadNextPage() {
+    return loadNextPage(PAGE_SIZE);
+  }
+
+
+  /**
+   * Loads at least the given number of notes, unless the end of the results is reached before
+   */
+  public synchronized List<Note> loadNextPage(int minSize) {
+    List<Note> notes = new ArrayList<>();
+    while (!endReached && notes.size() < minSize) {
+      notes.addAll(loadPage(Math.max(minSize - notes.size(), PAGE_SIZE)));
+    }
+    return notes;
+  }
+
+
+  /**
+   * Loads all the notes not retrieved yet
+   */
+  public List<Note> loadRemaining() {
+    return loadNextPage(Integer.MAX_VALUE);
+  }
+
+
+  public synchronized boolean isEndReached() {
+    return endReached;
+  }
+
+
+  private List<Note> loadPage(int limit) {
+    List<String> args = new ArrayList<>(Arrays.asList(noteQuery.getArgs()));
+    StringBuilder condition = new StringBuilder();
+    String whereCondition = stripWhere(noteQuery.getCondition());
+    if (!whereCondition.isEmpty()) {
+      condition.append("(").append(whereCondition).append(")");
+    }
+    if (started) {
+      condition.append(condition.length() > 0 ? " AND " : "")
+          .append("(").append(getKeysetCondition(args)).append(")");
+    }
+    String direction = ascending ? " ASC" : " DESC";
+    String sortKeyColumn = "," + sortExpression + " AS " + SORT_KEY_ALIAS;
+    String whereClause = condition.length() > 0 ? " WHERE " + condition : "";
+    String orderClause = " ORDER BY " + sortExpression + " COLLATE NOCASE" + direction
+        + ", " + KEY_CREATION + direction
+        + " LIMIT " + limit;
+    String query = dbHelper.getNoteSummariesQuery(sortKeyColumn, whereClause, orderClause);
+
+    List<Note> notes = new ArrayList<>();
+    try (Cursor cursor = dbHelper.getDatabase()
+        .rawQuery(query, args.toArray(new String[0]))) {
+      int sortKeyIndex = cursor.getColumnIndexOrThrow(SORT_KEY_ALIAS);
+      while (cursor.moveToNext()) {
+        Note note = dbHelper.readNoteSummary(cursor);
+        lastSortKey = readSortKey(cursor, sortKeyIndex);
+        lastId = note.getCreation();
+        started = true;
+        notes.add(note);
+      }
+      endReached = cursor.getCount() < limit;
+    }
+    LogDelegate.v("Loaded page of " + notes.size() + " notes");
+    return notes;
+  }
+
+
+  /**
+   * Condition selecting rows following the last loaded one. SQLite considers NULL lower than any
+   * other value, so NULL sorting keys come first in ascending order and last in descending one.
+   * Values are always bound so every page after the first one shares the same statement.
+   */
+  private String getKeysetCondition(List<String> args) {
+    String sortKey = sortExpression + " COLLATE NOCASE";
+    String compare = ascending ? " > " : " < ";
+    String tieBreak = KEY_CREATION + compare + "?";
+    String id = String.valueOf(lastId);
+    if (lastSortKey == null) {
+      args.add(id);
+      return ascending
+          ? sortExpression + " IS NOT NULL OR (" + sortExpression + " IS NULL AND " + tieBreak + ")"
+          : sortExpression + " IS NULL AND " + tieBreak;
+    }
+    String value = toSqlParameter(lastSortKey);
+    String afterKey = sortKey + compare + value + " OR (" + sortKey + " = " + value
+        + " AND " + tieBreak + ")";
+    // Value is repeated in the condition so it must be bound twice
+    Collections.addAll(args, String.valueOf(lastSortKey), String.valueOf(lastSortKey), id);
+    return ascending ? afterKey : afterKey + " OR " + sortExpression + " IS NULL";
+  }
+
+
+  /**
+   * Bound parameters are always text, so numbers are cast back to be compared as numbers even
+   * with sorting expressions that have no column affinity
+   */
+  private static String toSqlParameter(Object value) {
+    if (value instanceof Long) {
+      return "CAST(? AS INTEGER)";
+    } else if (value instanceof Double) {
+      return "CAST(? AS REAL)";
+    }
+    return "?";
+  }
+
+
+  private static Object readSortKey(Cursor cursor, int index) {
+    switch (cursor.getType(index)) {
+      case Cursor.FIELD_TYPE_NULL:
+        return null;
+      case Cursor.FIELD_TYPE_INTEGER:
+        return cursor.getLong(index);
+      case Cursor.FIELD_TYPE_FLOAT:
+        return cursor.getDouble(index);
+      default:
+        return cursor.getString(index);
+    }
+  }
+
+
+  private static String stripWhere(String whereCondition) {
+    String condition = whereCondition == null ? "" : whereCondition.trim();
+    return condition.regionMatches(true, 0, "WHERE ", 0, 6) ? condition.substring(6).trim()
+        : condition;
+  }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.checklistview.interfaces.Constants.UNCHECKED_SYM;
+import static it.feio.android.omninotes.db.DbHelper.KEY_ARCHIVED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CATEGORY;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CHECKLIST;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CONTENT;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CREATION;
+import static it.feio.android.omninotes.db.DbHelper.KEY_FTS_DOCID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_LOCKED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_NOTE_TAG;
+import static it.feio.android.omninotes.db.DbHelper.KEY_NOTE_TAG_NOTE_ID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_REMINDER;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TITLE;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TRASHED;
+import static it.feio.android.omninotes.db.DbHelper.TABLE_NOTES_FTS;
+import static it.feio.android.omninotes.db.DbHelper.TABLE_NOTE_TAGS;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_FILTER_ARCHIVED_IN_CATEGORIES;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_FILTER_PAST_REMINDERS;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SORTING_COLUMN;
+
+import com.pixplicity.easyprefs.library.Prefs;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.utils.Navigation;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Describes which notes must be listed and how they're sorted. Navigation state and preferences
+ * are read when the query is created, then it's compiled only once into a parameterized SQL
+ * condition: its text only depends on the query shape, so the statement prepared by SQLite is
+ * reused from the connection cache whatever the searched values are.
+ */
+public class NoteQuery {
+
+  private enum Filter {ALL, NAVIGATION, PATTERN, TAGS, UNCOMPLETE_CHECKLISTS}
+
+
+  private final Filter filter;
+  private final int navigation;
+  private final String sortColumn;
+  private Long categoryId;
+  private String pattern;
+  private String[] tags;
+  private boolean filterPastReminders;
+  private boolean filterArchivedInCategory;
+
+  private String compiledCondition;
+  private String[] compiledArgs;
+
+
+  private NoteQuery(Filter filter, int navigation) {
+    this.filter = filter;
+    this.navigation = navigation;
+    // Reminder screen forces sorting
+    this.sortColumn = navigation == Navigation.REMINDERS
+        ? KEY_REMINDER
+        : Prefs.getString(PREF_SORTING_COLUMN, KEY_TITLE);
+    if (navigation == Navigation.CATEGORY) {
+      setCategoryId(Navigation.getCategory());
+    }
+    filterPastReminders = Prefs.getBoolean(PREF_FILTER_PAST_REMINDERS, false);
+  }
+
+
+  /**
+   * All notes, whatever their state is
+   */
+  public static NoteQuery forAllNotes() {
+    return new NoteQuery(Filter.ALL, Navigation.getNavigation());
+  }
+
+
+  /**
+   * Notes shown by current navigation
+   */
+  public static NoteQuery forCurrentNavigation() {
+    return forNavigation(Navigation.getNavigation());
+  }
+
+
+  public static NoteQuery forNavigation(int navigation) {
+    return new NoteQuery(Filter.NAVIGATION, navigation);
+  }
+
+
+  public static NoteQuery forCategory(Long categoryId) {
+    NoteQuery noteQuery = new NoteQuery(Filter.NAVIGATION, Navigation.CATEGORY);
+    noteQuery.setCategoryId(categoryId);
+    return noteQuery;
+  }
+
+
+  /**
+   * Notes of current navigation matching pattern with title or content text. Words in the pattern
+   * are matched as prefixes against the full-text index, while patterns without any indexable
+   * word (ex. punctuation only) fall back to a substring search.
+   */
+  public static NoteQuery forPattern(String pattern) {
+    NoteQuery noteQuery = new NoteQuery(Filter.PATTERN, Navigation.getNavigation());
+    noteQuery.pattern = pattern;
+    return noteQuery;
+  }
+
+
+  /**
+   * Notes containing all the given tags, trashed ones only when searching from trash
+   */
+  public static NoteQuery forTags(String... tags) {
+    NoteQuery noteQuery = new NoteQuery(Filter.TAGS, Navigation.getNavigation());
+    noteQuery.tags = tags;
+    return noteQuery;
+  }
+
+
+  /**
+   * Checklists with unchecked items, trashed ones only when searching from trash
+   */
+  public static NoteQuery forUncompleteChecklists() {
+    return new NoteQuery(Filter.UNCOMPLETE_CHECKLISTS, Navigation.getNavigation());
+  }
+
+
+  public synchronized NoteQuery setFilterPastReminders(boolean filterPastReminders) {
+    this.filterPastReminders = filterPastReminders;
+    compiledCondition = null;
+    return this;
+  }
+
+
+  private void setCategoryId(Long categoryId) {
+    this.categoryId = categoryId;
+    filterArchivedInCategory = Prefs
+        .getBoolean(PREF_FILTER_ARCHIVED_IN_CATEGORIES + categoryId, false);
+  }
+
+
+  /**
+   * @return Condition with a leading "WHERE", or an empty string if all notes are matched
+   */
+  public synchronized String getCondition() {
+    compile();
+    return compiledCondition;
+  }
+
+
+  public synchronized String[] getArgs() {
+    compile();
+    return compiledArgs.clone();
+  }
+
+
+  public String getSortExpression() {
+    return DbHelper.getSortExpression(sortColumn);
+  }
+
+
+  public boolean isSortAscending() {
+    return DbHelper.isSortAscending(sortColumn);
+  }
+
+
+  private void compile() {
+    if (compiledCondition != null) {
+      return;
+    }
+    List<String> args = new ArrayList<>();
+    List<String> conditions = new ArrayList<>();
+    switch (filter) {
+      case PATTERN:
+        addSearchScopeConditions(conditions, args);
+        conditions.add(getPatternCondition(args));
+        break;
+      case TAGS:
+        // Each tag is an indexed lookup, so a note must have all of them to be matched
+        for (String tag : tags) {
+          conditions.add(KEY_CREATION + " IN (SELECT " + KEY_NOTE_TAG_NOTE_ID + " FROM "
+              + TABLE_NOTE_TAGS + " WHERE " + KEY_NOTE_TAG + " = ?)");
+          args.add(tag);
+        }
+        conditions.add(getTrashedCondition());
+        break;
+      case UNCOMPLETE_CHECKLISTS:
+        conditions.add(KEY_CHECKLIST + " = 1");
+        conditions.add(KEY_CONTENT + " LIKE ?");
+        args.add("%" + UNCHECKED_SYM + "%");
+        conditions.add(getTrashedCondition());
+        break;
+      case NAVIGATION:
+        addNavigationConditions(conditions, args);
+        break;
+      default:
+        break;
+    }
+    compiledCondition = conditions.isEmpty() ? ""
+        : " WHERE " + StringUtils.join(conditions, " AND ");
+    compiledArgs = args.toArray(new String[0]);
+    LogDelegate.v("Compiled notes query: " + compiledCondition);
+  }
+
+
+  private void addNavigationConditions(List<String> conditions, List<String> args) {
+    switch (navigation) {
+      case Navigation.NOTES:
+        conditions.add(KEY_ARCHIVED + " IS NOT 1");
+        conditions.add(KEY_TRASHED + " IS NOT 1");
+        break;
+      case Navigation.ARCHIVE:
+        conditions.add(KEY_ARCHIVED + " = 1");
+        conditions.add(KEY_TRASHED + " IS NOT 1");
+        break;
+      case Navigation.REMINDERS:
+        if (filterPastReminders) {
+          conditions.add(KEY_REMINDER + " >= ?");
+          args.add(String.valueOf(Calendar.getInstance().getTimeInMillis()));
+        } else {
+          conditions.add(KEY_REMINDER + " IS NOT NULL");
+        }
+        conditions.add(KEY_ARCHIVED + " IS NOT 1");
+        conditions.add(KEY_TRASHED + " IS NOT 1");
+        break;
+      case Navigation.TRASH:
+        conditions.add(KEY_TRASHED + " = 1");
+        break;
+      case Navigation.UNCATEGORIZED:
+        conditions.add(getUncategorizedCondition());
+        conditions.add(KEY_TRASHED + " IS NOT 1");
+        break;
+      case Navigation.CATEGORY:
+        conditions.add(KEY_CATEGORY + " = ?");
+        args.add(String.valueOf(categoryId));
+        conditions.add(KEY_TRASHED + " IS NOT 1");
+        if (filterArchivedInCategory) {
+          conditions.add(KEY_ARCHIVED + " IS NOT 1");
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+
+  /**
+   * Searches are performed inside current navigation, ignoring archived notes filter in categories
+   * and past reminders one
+   */
+  private void addSearchScopeConditions(List<String> conditions, List<String> args) {
+    conditions.add(getTrashedCondition());
+    if (navigation == Navigation.ARCHIVE) {
+      conditions.add(KEY_ARCHIVED + " IS 1");
+    } else if (navigation == Navigation.CATEGORY) {
+      conditions.add(KEY_CATEGORY + " = ?");
+      args.add(String.valueOf(categoryId));
+    } else if (navigation == Navigation.UNCATEGORIZED) {
+      conditions.add(getUncategorizedCondition());
+    } else if (navigation == Navigation.REMINDERS) {
+      conditions.add(KEY_REMINDER + " IS NOT NULL");
+    }
+  }
+
+
+  private String getTrashedCondition() {
+    return KEY_TRASHED + (navigation == Navigation.TRASH ? " IS 1" : " IS NOT 1");
+  }
+
+
+  private String getUncategorizedCondition() {
+    return "(" + KEY_CATEGORY + " IS NULL OR " + KEY_CATEGORY + " == 0)";
+  }
+
+
+  private String getPatternCondition(List<String> args) {
+    String matchQuery = DbHelper.toFtsMatchQuery(pattern);
+    if (matchQuery != null) {
+      // Locked notes content is not indexed so only their title is matched
+      args.add(matchQuery);
+      return KEY_CREATION + " IN (SELECT " + KEY_FTS_DOCID + " FROM " + TABLE_NOTES_FTS
+          + " WHERE " + TABLE_NOTES_FTS + " MATCH ?)";
+    }
+    String likePattern = "%" + DbHelper.escapeLike(pattern) + "%";
+    args.add(likePattern);
+    args.add(likePattern);
+    args.add(likePattern);
+    return "("
+        + " ( " + KEY_LOCKED + " IS NOT 1 AND (" + KEY_TITLE + " LIKE ? ESCAPE '\\' OR "
+        + KEY_CONTENT + " LIKE ? ESCAPE '\\' ))"
+        + " OR ( " + KEY_LOCKED + " = 1 AND " + KEY_TITLE + " LIKE ? ESCAPE '\\' )"
+        + ")";
+  }
+
+}
@@ -23,10 +23,16 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 
 public class SqlParser {
 
+  private static final Pattern TRIGGER_START = Pattern
+      .compile("CREATE\\s+(TEMP\\s+|TEMPORARY\\s+)?TRIGGER\\s");
+  private static final Pattern TRIGGER_END = Pattern.compile("\\sEND$");
+
   public static List<String> parseSqlFile(String sqlFile,
       AssetManager assetManager) throws IOException {
     List<String> sqlIns = null;
@@ -103,7 +109,7 @@ public class SqlParser {
       if (content[i] == '\'') {
         inLiteral = !inLiteral;
       }
-      if (content[i] == delim && !inLiteral) {
+      if (content[i] == delim && !inLiteral && !isInsideTriggerBody(sb)) {
         if (sb.length() > 0) {
           statements.add(sb.toString().trim());
           sb = new StringBuilder();
@@ -118,4 +124,14 @@ public class SqlParser {
     return statements;
   }
 
+
+  /**
+   * Triggers bodies contain statements delimited by semicolons themselves, so the trigger
+   * statement is considered closed only after its final "END" keyword
+   */
+  private static boolean isInsideTriggerBody(StringBuilder statement) {
+    String sql = statement.toString().trim().toUpperCase(Locale.ROOT);
+    return TRIGGER_START.matcher(sql).lookingAt() && !TRIGGER_END.matcher(sql).find();
+  }
+
 }
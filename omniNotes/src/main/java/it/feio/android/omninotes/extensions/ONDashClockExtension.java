@@ -30,7 +30,9 @@ import com.google.android.apps.dashclock.api.ExtensionData;
 import it.feio.android.omninotes.MainActivity;
 import it.feio.android.omninotes.R;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.NoteQuery;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.Navigation;
 import it.feio.android.omninotes.utils.TextHelper;
 import it.feio.android.omninotes.utils.date.DateUtils;
 import java.util.ArrayList;
@@ -123,7 +125,8 @@ public class ONDashClockExtension extends DashClockExtension {
     List<Note> reminders = new ArrayList<>();
     List<Note> today = new ArrayList<>();
     List<Note> tomorrow = new ArrayList<>();
-    for (Note note : DbHelper.getInstance().getNotesActive()) {
+    for (Note note : DbHelper.getInstance()
+        .getNoteSummaries(NoteQuery.forNavigation(Navigation.NOTES))) {
       activeNotes.add(note);
       if (note.getAlarm() != null && !note.isReminderFired()) {
         reminders.add(note);
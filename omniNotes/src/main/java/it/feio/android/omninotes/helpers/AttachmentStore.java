@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_ATTACHMENTS_DEDUPLICATION;
+
+import android.content.Context;
+import android.net.Uri;
+import com.pixplicity.easyprefs.library.Prefs;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.utils.FileHelper;
+import it.feio.android.omninotes.utils.StorageHelper;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Stores attachments files by content: each file is named after the SHA-256 digest of its data, so
+ * identical files attached to many notes are stored once. Attachments referencing a file are
+ * counted on database to know when it can be deleted. Files reused by a new attachment are touched,
+ * and aren't deleted while recently touched because notes not saved yet could reference them: that
+ * is left to attachments garbage collection.
+ */
+@UtilityClass
+public class AttachmentStore {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String TEMP_FILE_PREFIX = "store";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final Pattern STORED_FILE_NAME = Pattern.compile("[0-9a-f]{64}(\\..*)?");
+  // Same as attachments garbage collection minimum files age
+  private static final long REUSE_GRACE_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+  public static boolean isEnabled() {
+    return Prefs.getBoolean(PREF_ATTACHMENTS_DEDUPLICATION, false);
+  }
+
+  /**
+   * Checks if the file has already been stored by content
+   */
+  public static boolean isStored(File file) {
+    return StorageHelper.getAttachmentDir().equals(file.getParentFile())
+        && STORED_FILE_NAME.matcher(file.getName()).matches();
+  }
+
+  /**
+   * Copies the uri content into the store. Files already stored, ex. the attachments of merged
+   * notes, are returned without being read again.
+   *
+   * @return Stored file, that could have been stored before by another attachment
+   */
+  public static File store(Context context, Uri uri, String extension) throws IOException {
+    if ("file".equals(uri.getScheme()) && isStored(new File(uri.getPath()))) {
+      return touch(new File(uri.getPath()));
+    }
+    InputStream is;
+    try {
+      is = context.getContentResolver().openInputStream(uri);
+    } catch (FileNotFoundException | SecurityException e) {
+      String path = FileHelper.getPath(context, uri);
+      is = new FileInputStream(path != null ? path : uri.getPath());
+    }
+    if (is == null) {
+      throw new FileNotFoundException("Can't open " + uri);
+    }
+    try (InputStream source = is) {
+      return store(source, extension);
+    }
+  }
+
+  /**
+   * Copies the stream into the store, computing the digest while data is written to a temporary
+   * file that is then renamed after it
+   */
+  public static File store(InputStream is, String extension) throws IOException {
+    File attachmentsDir = StorageHelper.getAttachmentDir();
+    File tempFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, attachmentsDir);
+    try {
+      MessageDigest digest = newDigest();
+      try (OutputStream os = new DigestOutputStream(new FileOutputStream(tempFile), digest)) {
+        IOUtils.copyLarge(is, os, new byte[BUFFER_SIZE]);
+      }
+      return moveToStore(tempFile, toHex(digest.digest()), extension);
+    } finally {
+      FileUtils.deleteQuietly(tempFile);
+    }
+  }
+
+  /**
+   * Moves a file into the store, deleting it if the same content was already stored
+   */
+  public static File store(File file, String extension) throws IOException {
+    if (isStored(file)) {
+      return touch(file);
+    }
+    File stored = moveToStore(file, hash(file), extension);
+    FileUtils.deleteQuietly(file);
+    return stored;
+  }
+
+  /**
+   * Deletes the attachment file and its thumbnails unless other attachments still reference it, or
+   * it has been stored or reused recently by notes that could be not saved yet. Attachments
+   * already saved must be removed from database before.
+   */
+  public static boolean release(Context context, Attachment attachment) {
+    if (DbHelper.getInstance().getAttachmentReferencesCount(attachment.getUri()) > 0) {
+      LogDelegate.d("Attachment file " + attachment.getUri() + " still referenced");
+      return false;
+    }
+    File file = new File(attachment.getUri().getPath());
+    if (isStored(file)
+        && file.lastModified() > System.currentTimeMillis() - REUSE_GRACE_PERIOD) {
+      LogDelegate.d("Attachment file " + attachment.getUri() + " recently stored, left to GC");
+      return false;
+    }
+    ThumbnailCache.invalidate(context, attachment);
+    return StorageHelper.delete(context, attachment.getUri().getPath());
+  }
+
+  /**
+   * @return Hex encoded SHA-256 digest of the file content
+   */
+  public static String hash(File file) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream is = new FileInputStream(file)) {
+      for (int read = is.read(buffer); read != -1; read = is.read(buffer)) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  private static synchronized File moveToStore(File file, String hash, String extension)
+      throws IOException {
+    File stored = new File(StorageHelper.getAttachmentDir(), hash + extension);
+    if (stored.exists()) {
+      touch(stored);
+    } else if (!file.renameTo(stored)) {
+      FileUtils.moveFile(file, stored);
+    }
+    return stored;
+  }
+
+  /**
+   * Touched files are spared by release and garbage collection of unreferenced files until they're
+   * saved again
+   */
+  private static File touch(File stored) {
+    if (!stored.setLastModified(System.currentTimeMillis())) {
+      LogDelegate.w("Can't touch attachment file " + stored);
+    }
+    return stored;
+  }
+
+  private static MessageDigest newDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+}
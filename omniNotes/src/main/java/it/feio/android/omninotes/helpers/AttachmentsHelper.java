@@ -20,6 +20,7 @@ package it.feio.android.omninotes.helpers;
 
 import it.feio.android.omninotes.models.Attachment;
 import java.io.File;
+import java.util.Set;
 import lombok.experimental.UtilityClass;
 import org.apache.commons.io.FileUtils;
 
@@ -52,4 +53,29 @@ public class AttachmentsHelper {
     return false;
   }
 
+  /**
+   * Deletes files of the attachments directory whose name is not referenced anymore. Files
+   * modified after the given time are kept because they could belong to notes still being edited.
+   *
+   * @return Reclaimed space in bytes
+   */
+  public static long deleteUnreferencedFiles(File attachmentsDir, Set<String> referencedFileNames,
+      long modifiedBefore) {
+    File[] files = attachmentsDir != null ? attachmentsDir.listFiles() : null;
+    if (files == null) {
+      return 0;
+    }
+    long reclaimed = 0;
+    for (File file : files) {
+      if (file.isFile() && !referencedFileNames.contains(file.getName())
+          && file.lastModified() < modifiedBefore) {
+        long length = file.length();
+        if (file.delete()) {
+          reclaimed += length;
+        }
+      }
+    }
+    return reclaimed;
+  }
+
 }
@@ -20,10 +20,10 @@ package it.feio.android.omninotes.helpers;
 
 import static it.feio.android.omninotes.utils.ConstantsBase.DATABASE_NAME;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_GENERATION;
 
 import android.content.Context;
 import android.content.Intent;
-import android.text.TextUtils;
 import android.webkit.MimeTypeMap;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -33,53 +33,120 @@ import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.R;
 import it.feio.android.omninotes.async.DataBackupIntentService;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.exceptions.BackupException;
 import it.feio.android.omninotes.exceptions.checked.BackupAttachmentException;
+import it.feio.android.omninotes.helpers.json.NoteJsonReader;
+import it.feio.android.omninotes.helpers.json.NoteJsonWriter;
 import it.feio.android.omninotes.helpers.notifications.NotificationsHelper;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.utils.Security;
 import it.feio.android.omninotes.utils.StorageHelper;
 import it.feio.android.omninotes.utils.TextHelper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 import lombok.experimental.UtilityClass;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.io.IOUtils;
 import org.bitbucket.cowwoc.diffmatchpatch.DiffMatchPatch;
+import org.json.JSONException;
 import rx.Observable;
 
 @UtilityClass
 public final class BackupHelper {
 
+  private static final String JSON_EXTENSION = ".json";
+  private static final String NOTE_FILE_NAME_REGEX = "\\d{13}.json";
+  private static final String MANIFEST_NAME = "backup_manifest";
+  public static final String ARCHIVE_EXTENSION = ".zip";
+  public static final String ARCHIVE_MIME_TYPE = "application/zip";
+  private static final String ARCHIVE_NOTES_ENTRY = "notes.ndjson";
+  private static final int ARCHIVE_BUFFER_SIZE = 64 * 1024;
+  private static final int NOTES_PAGE_SIZE = 500;
+  private static final int MAX_IMPORT_PARSERS = 4;
+  private static final int ATTACHMENTS_COPY_WORKERS = 3;
+  private static final long PROGRESS_NOTIFICATION_INTERVAL = 500;
+
   public static void exportNotes(DocumentFileCompat backupDir) {
-    for (Note note : DbHelper.getInstance(true).getAllNotes(false)) {
-      exportNote(backupDir, note);
+    DbHelper dbHelper = DbHelper.getInstance(true);
+    // Notes are loaded a page at a time to keep memory usage bounded
+    List<Note> notes = dbHelper.getNotesPage(0, NOTES_PAGE_SIZE);
+    while (!notes.isEmpty()) {
+      for (Note note : notes) {
+        exportNote(backupDir, note);
+      }
+      notes = dbHelper.getNotesPage(notes.get(notes.size() - 1).get_id(), NOTES_PAGE_SIZE);
     }
   }
 
-  public static void exportNote(DocumentFileCompat backupDir, Note note) {
-    if (Boolean.TRUE.equals(note.isLocked())) {
-      note.setContent(Security.encrypt(note.getContent(), Prefs.getString(PREF_PASSWORD, "")));
-    }
+  /**
+   * @return False if note couldn't be written
+   */
+  public static boolean exportNote(DocumentFileCompat backupDir, Note note) {
+    prepareForBackup(note);
     var noteFile = getBackupNoteFile(backupDir, note);
-    try {
-      DocumentFileHelper.write(OmniNotes.getAppContext(), noteFile, note.toJSON());
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(OmniNotes.getAppContext()
+        .getContentResolver().openOutputStream(noteFile.getUri()), StandardCharsets.UTF_8))) {
+      new NoteJsonWriter(writer).write(note);
+      return true;
     } catch (IOException e) {
       LogDelegate.e(String.format("Error on note %s backup: %s",  note.get_id(), e.getMessage()));
+      return false;
+    }
+  }
+
+  /**
+   * Locked notes content is stored encrypted into backups
+   */
+  private static void prepareForBackup(Note note) {
+    if (Boolean.TRUE.equals(note.isLocked())) {
+      note.setContent(Security.encrypt(note.getContent(), Prefs.getString(PREF_PASSWORD, "")));
     }
   }
 
   @NonNull
   public static DocumentFileCompat getBackupNoteFile(DocumentFileCompat backupDir, Note note) {
+    return createJsonFile(backupDir, String.valueOf(note.get_id()));
+  }
+
+  private static DocumentFileCompat createJsonFile(DocumentFileCompat dir, String baseName) {
     String backupFileMimetype = "application/json";
-    String backupFileExtension = MimeTypeMap.getSingleton().hasMimeType(backupFileMimetype) ? "" : ".json";
-    return backupDir.createFile(backupFileMimetype, note.get_id() + backupFileExtension);
+    String backupFileExtension = MimeTypeMap.getSingleton().hasMimeType(backupFileMimetype) ? "" : JSON_EXTENSION;
+    return dir.createFile(backupFileMimetype, baseName + backupFileExtension);
   }
 
   /**
@@ -87,45 +154,110 @@ public final class BackupHelper {
    */
   public static void exportAttachments(DocumentFileCompat backupDir, NotificationsHelper notificationsHelper) {
     DocumentFileCompat attachmentsDestinationDir = backupDir.createDirectory(StorageHelper.getAttachmentDir().getName());
-    List<Attachment> list = DbHelper.getInstance().getAllAttachments();
+    List<Attachment> list = getDistinctFiles(DbHelper.getInstance().getAllAttachments());
     exportAttachments(notificationsHelper, attachmentsDestinationDir, list, null);
   }
 
   public static boolean exportAttachments(NotificationsHelper notificationsHelper,
       DocumentFileCompat destinationattachmentsDir, List<Attachment> list, List<Attachment> listOld) {
-    boolean result = true;
     listOld = listOld == null ? Collections.emptyList() : listOld;
-    int exported = 0;
-    int failed = 0;
-    String failedString = "";
-
-    for (Attachment attachment : list) {
-      try {
-        exportAttachment(destinationattachmentsDir, attachment);
-        ++exported;
-      } catch (BackupAttachmentException e) {
-        ++failed;
-        result = false;
-        failedString = " (" + failed + " " + OmniNotes.getAppContext().getString(R.string.failed) + ")";
-      }
 
-      notifyAttachmentBackup(notificationsHelper, list, exported, failedString);
-    }
+    List<Attachment> failed = copyAttachments(notificationsHelper, list,
+        attachment -> exportAttachment(destinationattachmentsDir, attachment));
 
     Observable.from(listOld)
         .filter(attachment -> !list.contains(attachment))
         .forEach(attachment -> destinationattachmentsDir.findFile(
             attachment.getUri().getLastPathSegment()).delete());
 
-    return result;
+    return failed.isEmpty();
+  }
+
+  /**
+   * Copies attachments on a small pool of workers, as storage is accessed better by a few
+   * concurrent streams than by one or many. Progress is notified by the calling thread while it
+   * collects copies results in list order, at most once every
+   * {@link #PROGRESS_NOTIFICATION_INTERVAL} milliseconds.
+   *
+   * @return Attachments whose copy failed, in the same order of the given list whatever the copies
+   * completion order is
+   */
+  private static List<Attachment> copyAttachments(NotificationsHelper notificationsHelper,
+      List<Attachment> attachments, AttachmentCopy attachmentCopy) {
+    ExecutorService workers = Executors.newFixedThreadPool(ATTACHMENTS_COPY_WORKERS);
+    List<Future<Void>> copies = new ArrayList<>(attachments.size());
+    for (Attachment attachment : attachments) {
+      copies.add(workers.submit(() -> {
+        attachmentCopy.copy(attachment);
+        return null;
+      }));
+    }
+
+    List<Attachment> failed = new ArrayList<>();
+    long lastNotification = 0;
+    try {
+      for (int i = 0; i < copies.size(); i++) {
+        try {
+          copies.get(i).get();
+        } catch (ExecutionException e) {
+          failed.add(attachments.get(i));
+        }
+        lastNotification = notifyAttachmentBackup(notificationsHelper, attachments, i + 1,
+            failed.size(), lastNotification);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BackupException("Attachments copy interrupted", e);
+    } finally {
+      workers.shutdownNow();
+    }
+    return failed;
+  }
+
+  /**
+   * Attachments stored by content can share the same file, that must be copied only once
+   */
+  private static List<Attachment> getDistinctFiles(List<Attachment> attachments) {
+    Set<String> names = new HashSet<>();
+    List<Attachment> distinctFiles = new ArrayList<>();
+    for (Attachment attachment : attachments) {
+      if (names.add(attachment.getUri().getLastPathSegment())) {
+        distinctFiles.add(attachment);
+      }
+    }
+    return distinctFiles;
+  }
+
+  private interface AttachmentCopy {
+
+    void copy(Attachment attachment) throws BackupAttachmentException;
+
+  }
+
+  /**
+   * Notifies attachments progress at most once every {@link #PROGRESS_NOTIFICATION_INTERVAL}
+   * milliseconds, and always for the last attachment
+   *
+   * @return Time of the last notification sent
+   */
+  private static long notifyAttachmentBackup(NotificationsHelper notificationsHelper,
+      List<Attachment> list, int processed, int failed, long lastNotification) {
+    long now = System.currentTimeMillis();
+    if (now - lastNotification >= PROGRESS_NOTIFICATION_INTERVAL || processed == list.size()) {
+      notifyAttachmentBackup(notificationsHelper, list, processed, failed);
+      return now;
+    }
+    return lastNotification;
   }
 
   private static void notifyAttachmentBackup(NotificationsHelper notificationsHelper,
-      List<Attachment> list, int exported, String failedString) {
+      List<Attachment> list, int processed, int failed) {
     if (notificationsHelper != null) {
+      String failedString = failed == 0 ? ""
+          : " (" + failed + " " + OmniNotes.getAppContext().getString(R.string.failed) + ")";
       String notificationMessage =
           TextHelper.capitalize(OmniNotes.getAppContext().getString(R.string.attachment)) + " "
-              + exported + "/" + list.size() + failedString;
+              + processed + "/" + list.size() + failedString;
       notificationsHelper.updateMessage(notificationMessage);
     }
   }
@@ -135,49 +267,359 @@ public final class BackupHelper {
     try {
       var destinationAttachment = attachmentsDestination.createFile("",
           attachment.getUri().getLastPathSegment());
-      DocumentFileHelper.copyFileTo(OmniNotes.getAppContext(), new File(attachment.getUri().getPath()),
-          destinationAttachment);
+      if (!DocumentFileHelper.copyFileTo(OmniNotes.getAppContext(),
+          new File(attachment.getUri().getPath()), destinationAttachment)) {
+        throw new IOException("Copy failed");
+      }
     } catch (Exception e) {
       LogDelegate.e("Error during attachment backup: " + attachment.getUriPath(), e);
       throw new BackupAttachmentException(e);
     }
   }
 
-  public static List<Note> importNotes(DocumentFileCompat backupDir) {
-    return Observable.from(backupDir.listFiles())
-        .filter(f -> f.getName().matches("\\d{13}.json"))
-        .map(BackupHelper::importNote)
-        .filter(n -> n != null)
-        .toList().toBlocking().single();
+  /**
+   * Exports to a backup folder only notes and attachments changed since the previous export to the
+   * same folder, then removes from it the ones that don't exist anymore. Changes are detected using
+   * a manifest written into the folder at the end of each export, so a folder without it gets a
+   * full export.
+   */
+  public static void exportIncrementally(DocumentFileCompat backupDir,
+      NotificationsHelper notificationsHelper) {
+    Map<String, DocumentFileCompat> backupFiles = listFilesByName(backupDir);
+    var manifestFile = backupFiles.get(MANIFEST_NAME + JSON_EXTENSION);
+    BackupManifest previousManifest = readManifest(manifestFile);
+    BackupManifest manifest = new BackupManifest(System.currentTimeMillis(),
+        Prefs.getLong(PREF_PASSWORD_GENERATION, 0));
+
+    exportNotesIncrementally(backupDir, backupFiles, previousManifest, manifest);
+
+    String attachmentsDirName = StorageHelper.getAttachmentDir().getName();
+    var attachmentsDir = backupFiles.get(attachmentsDirName);
+    if (attachmentsDir == null) {
+      attachmentsDir = backupDir.createDirectory(attachmentsDirName);
+    }
+    exportAttachmentsIncrementally(notificationsHelper, attachmentsDir, previousManifest, manifest);
+
+    writeManifest(backupDir, manifestFile, manifest);
   }
 
-  @Nullable
-  public static Note importNote(DocumentFileCompat file) {
-    Note note = getImportNote(file);
+  static void exportNotesIncrementally(DocumentFileCompat backupDir,
+      Map<String, DocumentFileCompat> backupFiles, BackupManifest previousManifest,
+      BackupManifest manifest) {
+    boolean passwordChanged =
+        previousManifest.getPasswordGeneration() != manifest.getPasswordGeneration();
+    Set<Long> changedNotesIds = new HashSet<>();
+    Set<String> notesFileNames = new HashSet<>();
+    // Notes state is enough to detect changes, full notes are only loaded for the changed ones
+    for (Note note : DbHelper.getInstance().getNotesState()) {
+      String noteFileName = note.get_id() + JSON_EXTENSION;
+      notesFileNames.add(noteFileName);
+      if (!backupFiles.containsKey(noteFileName) || previousManifest.isNoteChanged(note)
+          || (passwordChanged && Boolean.TRUE.equals(note.isLocked()))) {
+        changedNotesIds.add(note.get_id());
+      } else {
+        manifest.putNote(note);
+      }
+    }
 
-    if (Boolean.TRUE.equals(note.isLocked())) {
-      if (StringUtils.isEmpty(Prefs.getString(PREF_PASSWORD, ""))) {
-        return null;
+    List<Long> changedNotesIdsList = new ArrayList<>(changedNotesIds);
+    for (int i = 0; i < changedNotesIdsList.size(); i += NOTES_PAGE_SIZE) {
+      List<Long> pageIds = changedNotesIdsList.subList(i,
+          Math.min(i + NOTES_PAGE_SIZE, changedNotesIdsList.size()));
+      for (Note note : DbHelper.getInstance().getNotesById(pageIds)) {
+        var previousNoteFile = backupFiles.get(note.get_id() + JSON_EXTENSION);
+        if (previousNoteFile != null) {
+          previousNoteFile.delete();
+        }
+        if (exportNote(backupDir, note)) {
+          manifest.putNote(note);
+        }
       }
-      note.setContent(Security.decrypt(note.getContent(), Prefs.getString(PREF_PASSWORD, "")));
     }
 
-    if (note.getCategory() != null) {
-      DbHelper.getInstance().updateCategory(note.getCategory());
+    for (Entry<String, DocumentFileCompat> backupFile : backupFiles.entrySet()) {
+      if (backupFile.getKey().matches(NOTE_FILE_NAME_REGEX)
+          && !notesFileNames.contains(backupFile.getKey())) {
+        backupFile.getValue().delete();
+      }
     }
-    DbHelper.getInstance().updateNote(note, false);
-    return note;
   }
 
-  public static Note getImportNote(DocumentFileCompat file) {
-    try {
-      Note note = new Note();
-      String jsonString = DocumentFileHelper.readContent(OmniNotes.getAppContext(), file);
-      if (!TextUtils.isEmpty(jsonString)) {
-        note.buildFromJson(jsonString);
+  /**
+   * Copies attachments not already into the backup folder and removes the ones not referenced by
+   * notes anymore. Attachments files are never edited, so a copy is considered up to date when its
+   * size matches, while the hash is checked only for files modified after the previous export.
+   */
+  static void exportAttachmentsIncrementally(NotificationsHelper notificationsHelper,
+      DocumentFileCompat attachmentsDir, BackupManifest previousManifest,
+      BackupManifest manifest) {
+    Map<String, DocumentFileCompat> backupAttachments = listFilesByName(attachmentsDir);
+    List<Attachment> attachments = DbHelper.getInstance().getAllAttachments();
+    Set<String> attachmentsNames = new HashSet<>();
+    List<Attachment> changedAttachments = new ArrayList<>();
+
+    for (Attachment attachment : attachments) {
+      String name = attachment.getUri().getLastPathSegment();
+      if (attachmentsNames.add(name)) {
+        File file = new File(attachment.getUri().getPath());
+        var entry = backupAttachments.containsKey(name) ? previousManifest.getAttachment(name) : null;
+        if (isAttachmentUnchanged(file, entry, previousManifest.getTimestamp())) {
+          manifest.putAttachment(name, entry);
+        } else {
+          changedAttachments.add(attachment);
+        }
+      }
+    }
+
+    Map<String, BackupManifest.AttachmentEntry> exportedEntries = new ConcurrentHashMap<>();
+    List<Attachment> failed = copyAttachments(notificationsHelper, changedAttachments,
+        attachment -> {
+          String name = attachment.getUri().getLastPathSegment();
+          File file = new File(attachment.getUri().getPath());
+          var backupAttachment = backupAttachments.get(name);
+          if (backupAttachment != null) {
+            backupAttachment.delete();
+          }
+          exportAttachment(attachmentsDir, attachment);
+          try {
+            exportedEntries.put(name,
+                new BackupManifest.AttachmentEntry(file.length(), BackupManifest.hash(file)));
+          } catch (IOException e) {
+            throw new BackupAttachmentException(e);
+          }
+        });
+    // Manifest is filled in list order so it doesn't depend on copies completion order
+    for (Attachment attachment : changedAttachments) {
+      String name = attachment.getUri().getLastPathSegment();
+      if (!failed.contains(attachment)) {
+        manifest.putAttachment(name, exportedEntries.get(name));
+      }
+    }
+
+    for (Entry<String, DocumentFileCompat> backupAttachment : backupAttachments.entrySet()) {
+      if (!attachmentsNames.contains(backupAttachment.getKey())) {
+        backupAttachment.getValue().delete();
       }
-      return note;
+    }
+  }
+
+  private static boolean isAttachmentUnchanged(File file,
+      BackupManifest.AttachmentEntry entry, long previousExport) {
+    if (entry == null || file.length() != entry.getSize()) {
+      return false;
+    }
+    try {
+      return file.lastModified() <= previousExport
+          || entry.getHash().equals(BackupManifest.hash(file));
     } catch (IOException e) {
+      LogDelegate.w("Error hashing attachment " + file.getName(), e);
+      return false;
+    }
+  }
+
+  private static Map<String, DocumentFileCompat> listFilesByName(DocumentFileCompat dir) {
+    Map<String, DocumentFileCompat> files = new HashMap<>();
+    for (DocumentFileCompat file : dir.listFiles()) {
+      files.put(file.getName(), file);
+    }
+    return files;
+  }
+
+  private static BackupManifest readManifest(@Nullable DocumentFileCompat manifestFile) {
+    if (manifestFile == null) {
+      return BackupManifest.empty();
+    }
+    try {
+      return BackupManifest.fromJson(
+          DocumentFileHelper.readContent(OmniNotes.getAppContext(), manifestFile));
+    } catch (IOException | JSONException e) {
+      LogDelegate.w("Backup manifest not readable, performing a full export", e);
+      return BackupManifest.empty();
+    }
+  }
+
+  private static void writeManifest(DocumentFileCompat backupDir,
+      @Nullable DocumentFileCompat previousManifestFile, BackupManifest manifest) {
+    if (previousManifestFile != null) {
+      previousManifestFile.delete();
+    }
+    try {
+      DocumentFileHelper.write(OmniNotes.getAppContext(), createJsonFile(backupDir, MANIFEST_NAME),
+          manifest.toJson());
+    } catch (IOException | JSONException e) {
+      LogDelegate.e("Error writing backup manifest", e);
+    }
+  }
+
+  /**
+   * Exports notes and attachments into a single zip archive, sequentially written to the given
+   * stream, so that backup storage is accessed only once whatever the number of notes is. Notes are
+   * stored first as a newline delimited JSON entry, then attachments files follow.
+   */
+  public static void exportArchive(OutputStream outputStream,
+      NotificationsHelper notificationsHelper) throws IOException {
+    try (ZipOutputStream zip = new ZipOutputStream(
+        new BufferedOutputStream(outputStream, ARCHIVE_BUFFER_SIZE))) {
+      zip.putNextEntry(new ZipEntry(ARCHIVE_NOTES_ENTRY));
+      // Closing the writer would close the whole archive
+      NoteJsonWriter notesWriter = new NoteJsonWriter(
+          new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8)));
+      DbHelper dbHelper = DbHelper.getInstance(true);
+      List<Note> notes = dbHelper.getNotesPage(0, NOTES_PAGE_SIZE);
+      while (!notes.isEmpty()) {
+        for (Note note : notes) {
+          prepareForBackup(note);
+          notesWriter.write(note);
+        }
+        notes = dbHelper.getNotesPage(notes.get(notes.size() - 1).get_id(), NOTES_PAGE_SIZE);
+      }
+      notesWriter.flush();
+      zip.closeEntry();
+
+      String attachmentsEntryPrefix = StorageHelper.getAttachmentDir().getName() + "/";
+      List<Attachment> attachments = DbHelper.getInstance().getAllAttachments();
+      Set<String> attachmentsNames = new HashSet<>();
+      byte[] buffer = new byte[ARCHIVE_BUFFER_SIZE];
+      int processed = 0;
+      int failed = 0;
+      long lastNotification = 0;
+      for (Attachment attachment : attachments) {
+        String name = attachment.getUri().getLastPathSegment();
+        if (attachmentsNames.add(name)) {
+          // Source is opened before adding the entry to avoid leaving empty ones for missing files
+          try (InputStream attachmentStream = new FileInputStream(attachment.getUri().getPath())) {
+            zip.putNextEntry(new ZipEntry(attachmentsEntryPrefix + name));
+            IOUtils.copyLarge(attachmentStream, zip, buffer);
+            zip.closeEntry();
+          } catch (FileNotFoundException e) {
+            LogDelegate.e("Error during attachment backup: " + attachment.getUriPath(), e);
+            ++failed;
+          }
+        }
+        lastNotification = notifyAttachmentBackup(notificationsHelper, attachments, ++processed,
+            failed, lastNotification);
+      }
+    }
+  }
+
+  /**
+   * Restores a backup archive created with {@link #exportArchive(OutputStream, NotificationsHelper)}
+   * reading its entries while they're streamed, without extracting it first
+   *
+   * @return Number of restored notes
+   */
+  public static int importArchive(InputStream inputStream, NotificationsHelper notificationsHelper)
+      throws IOException {
+    File attachmentsDir = StorageHelper.getAttachmentDir();
+    String attachmentsEntryPrefix = attachmentsDir.getName() + "/";
+    int importedNotes = 0;
+    int importedAttachments = 0;
+    byte[] buffer = new byte[ARCHIVE_BUFFER_SIZE];
+    try (ZipInputStream zip = new ZipInputStream(
+        new BufferedInputStream(inputStream, ARCHIVE_BUFFER_SIZE))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        if (ARCHIVE_NOTES_ENTRY.equals(entry.getName())) {
+          // Reader is not closed because that would close the whole archive, and it can't read
+          // beyond the current entry anyway
+          NoteJsonReader notesReader = new NoteJsonReader(
+              new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8)));
+          NotesImporter notesImporter = new NotesImporter(notificationsHelper);
+          while (notesReader.hasNext()) {
+            notesImporter.add(notesReader.next());
+          }
+          notesImporter.flush();
+          importedNotes += notesImporter.getImported();
+        } else if (!entry.isDirectory() && entry.getName().startsWith(attachmentsEntryPrefix)) {
+          // Only file name is kept to never write outside attachments folder
+          String name = new File(entry.getName()).getName();
+          try (OutputStream attachmentStream = new FileOutputStream(new File(attachmentsDir, name))) {
+            IOUtils.copyLarge(zip, attachmentStream, buffer);
+          }
+          if (notificationsHelper != null) {
+            notificationsHelper.updateMessage(TextHelper.capitalize(
+                OmniNotes.getAppContext().getString(R.string.attachment)) + " "
+                + ++importedAttachments);
+          }
+        }
+        zip.closeEntry();
+      }
+    }
+    return importedNotes;
+  }
+
+  public static int importNotes(DocumentFileCompat backupDir) {
+    return importNotes(backupDir, null);
+  }
+
+  /**
+   * Restores notes from a backup folder. Files are parsed by a pool of workers, never too far
+   * ahead of the calling thread that saves them in batches.
+   *
+   * @return Number of restored notes
+   */
+  public static int importNotes(DocumentFileCompat backupDir,
+      NotificationsHelper notificationsHelper) {
+    List<DocumentFileCompat> noteFiles = new ArrayList<>();
+    for (DocumentFileCompat file : backupDir.listFiles()) {
+      if (file.getName().matches(NOTE_FILE_NAME_REGEX)) {
+        noteFiles.add(file);
+      }
+    }
+
+    NotesImporter notesImporter = new NotesImporter(notificationsHelper);
+    ExecutorService parsers = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, MAX_IMPORT_PARSERS)));
+    CompletionService<Note> parsedNotes = new ExecutorCompletionService<>(parsers);
+    try {
+      // Parsed notes waiting to be saved are limited to keep memory usage bounded
+      int submitted = 0;
+      for (; submitted < Math.min(noteFiles.size(), NotesImporter.BATCH_SIZE * 2); submitted++) {
+        parsedNotes.submit(getImportNoteTask(noteFiles.get(submitted)));
+      }
+      for (int i = 0; i < noteFiles.size(); i++) {
+        Note note = parsedNotes.take().get();
+        if (submitted < noteFiles.size()) {
+          parsedNotes.submit(getImportNoteTask(noteFiles.get(submitted++)));
+        }
+        notesImporter.add(note);
+      }
+      notesImporter.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BackupException("Notes import interrupted", e);
+    } catch (ExecutionException e) {
+      throw new BackupException("Error importing notes", e);
+    } finally {
+      parsers.shutdownNow();
+    }
+    return notesImporter.getImported();
+  }
+
+  private static Callable<Note> getImportNoteTask(DocumentFileCompat file) {
+    return () -> getImportNote(file);
+  }
+
+  @Nullable
+  public static Note importNote(DocumentFileCompat file) {
+    return restoreNote(getImportNote(file));
+  }
+
+  @Nullable
+  private static Note restoreNote(Note note) {
+    NotesImporter notesImporter = new NotesImporter(null);
+    if (!notesImporter.add(note)) {
+      return null;
+    }
+    notesImporter.flush();
+    return note;
+  }
+
+  public static Note getImportNote(DocumentFileCompat file) {
+    try (Reader reader = new BufferedReader(new InputStreamReader(OmniNotes.getAppContext()
+        .getContentResolver().openInputStream(file.getUri()), StandardCharsets.UTF_8))) {
+      NoteJsonReader noteReader = new NoteJsonReader(reader);
+      return noteReader.hasNext() ? noteReader.next() : new Note();
+    } catch (IOException | IllegalStateException e) {
       LogDelegate.e("Error parsing note json");
       return new Note();
     }
@@ -187,39 +629,32 @@ public final class BackupHelper {
    * Import attachments from backup folder notifying for each imported item
    */
   public static boolean importAttachments(DocumentFileCompat backupDir, NotificationsHelper notificationsHelper) {
-    AtomicBoolean result = new AtomicBoolean(true);
     File attachmentsDir = StorageHelper.getAttachmentDir();
     var backupAttachmentsDir = backupDir.findFile(attachmentsDir.getName());
-    if (!backupAttachmentsDir.exists()) {
+    if (backupAttachmentsDir == null || !backupAttachmentsDir.exists()) {
       return false;
     }
 
-    AtomicInteger imported = new AtomicInteger();
-    ArrayList<Attachment> attachments = DbHelper.getInstance().getAllAttachments();
-    var BackupedAttachments = backupAttachmentsDir.listFiles();
-    rx.Observable.from(attachments)
-        .forEach(attachment -> {
-          try {
-            importAttachment(BackupedAttachments, attachmentsDir, attachment);
-            if (notificationsHelper != null) {
-              notificationsHelper.updateMessage(TextHelper.capitalize(OmniNotes.getAppContext().getString(R.string.attachment)) + " "
-                      + imported.incrementAndGet() + "/" + attachments.size());
-            }
-          } catch (BackupAttachmentException e) {
-            result.set(false);
-          }
-        });
-    return result.get();
+    List<Attachment> attachments = getDistinctFiles(DbHelper.getInstance().getAllAttachments());
+    Map<String, DocumentFileCompat> backupedAttachments = listFilesByName(backupAttachmentsDir);
+    List<Attachment> failed = copyAttachments(notificationsHelper, attachments,
+        attachment -> importAttachment(backupedAttachments, attachmentsDir, attachment));
+    return failed.isEmpty();
   }
 
-  static void importAttachment(List<DocumentFileCompat> backupedAttachments, File attachmentsDir,
-      Attachment attachment) throws BackupAttachmentException {
+  static void importAttachment(Map<String, DocumentFileCompat> backupedAttachments,
+      File attachmentsDir, Attachment attachment) throws BackupAttachmentException {
     String attachmentName = attachment.getUri().getLastPathSegment();
     try {
       File destinationAttachment = new File(attachmentsDir, attachmentName);
-      var backupedAttachment = Observable.from(backupedAttachments)
-          .filter(ba -> attachmentName.equals(ba.getName())).toBlocking().single();
-      DocumentFileHelper.copyFileTo(OmniNotes.getAppContext(), backupedAttachment, destinationAttachment);
+      var backupedAttachment = backupedAttachments.get(attachmentName);
+      if (backupedAttachment == null) {
+        throw new FileNotFoundException("Missing backup of attachment " + attachmentName);
+      }
+      if (!DocumentFileHelper.copyFileTo(OmniNotes.getAppContext(), backupedAttachment,
+          destinationAttachment)) {
+        throw new IOException("Error copying attachment " + attachmentName);
+      }
     } catch (Exception e) {
       LogDelegate.e("Error importing the attachment " + attachment.getUri().getPath(), e);
       throw new BackupAttachmentException(e);
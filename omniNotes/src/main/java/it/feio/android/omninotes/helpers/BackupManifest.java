@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.Security;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * Describes what an incremental backup folder contains: note IDs with their last modification,
+ * state and category, categories fingerprints and attachments names with their size and hash.
+ * It's stored into the backup folder itself, so that each export only writes what changed since
+ * the previous one.
+ */
+class BackupManifest {
+
+  static final String FILE_NAME = "backup_manifest";
+
+  private static final int VERSION = 2;
+  private static final String KEY_VERSION = "version";
+  private static final String KEY_TIMESTAMP = "timestamp";
+  private static final String KEY_PASSWORD_GENERATION = "password_generation";
+  private static final String KEY_NOTES = "notes";
+  private static final String KEY_CATEGORIES = "categories";
+  private static final String KEY_ATTACHMENTS = "attachments";
+  private static final String KEY_LAST_MODIFICATION = "last_modification";
+  private static final String KEY_STATE = "state";
+  private static final String KEY_CATEGORY = "category";
+  private static final String KEY_SIZE = "size";
+  private static final String KEY_HASH = "hash";
+
+  private final long timestamp;
+  private final long passwordGeneration;
+  private final Map<Long, NoteEntry> notes = new HashMap<>();
+  private final Map<Long, String> categories = new HashMap<>();
+  private final Map<String, AttachmentEntry> attachments = new HashMap<>();
+
+
+  /**
+   * @param passwordGeneration Counter increased each time locked notes are encrypted with another
+   * password, or decrypted because it was removed
+   */
+  BackupManifest(long timestamp, long passwordGeneration) {
+    this.timestamp = timestamp;
+    this.passwordGeneration = passwordGeneration;
+  }
+
+
+  /**
+   * Manifest of a folder that has never been exported, so that everything will be
+   */
+  static BackupManifest empty() {
+    return new BackupManifest(0, -1);
+  }
+
+
+  static BackupManifest fromJson(String json) throws JSONException {
+    JSONObject manifestJson = new JSONObject(json);
+    if (manifestJson.optInt(KEY_VERSION) != VERSION) {
+      return empty();
+    }
+    BackupManifest manifest = new BackupManifest(manifestJson.getLong(KEY_TIMESTAMP),
+        manifestJson.getLong(KEY_PASSWORD_GENERATION));
+
+    JSONObject notesJson = manifestJson.getJSONObject(KEY_NOTES);
+    for (Iterator<String> keys = notesJson.keys(); keys.hasNext(); ) {
+      String key = keys.next();
+      JSONObject noteJson = notesJson.getJSONObject(key);
+      manifest.notes.put(Long.valueOf(key), new NoteEntry(noteJson.getLong(KEY_LAST_MODIFICATION),
+          noteJson.getString(KEY_STATE), noteJson.getLong(KEY_CATEGORY)));
+    }
+    JSONObject categoriesJson = manifestJson.getJSONObject(KEY_CATEGORIES);
+    for (Iterator<String> keys = categoriesJson.keys(); keys.hasNext(); ) {
+      String key = keys.next();
+      manifest.categories.put(Long.valueOf(key), categoriesJson.getString(key));
+    }
+    JSONObject attachmentsJson = manifestJson.getJSONObject(KEY_ATTACHMENTS);
+    for (Iterator<String> keys = attachmentsJson.keys(); keys.hasNext(); ) {
+      String key = keys.next();
+      JSONObject attachmentJson = attachmentsJson.getJSONObject(key);
+      manifest.attachments.put(key, new AttachmentEntry(attachmentJson.getLong(KEY_SIZE),
+          attachmentJson.getString(KEY_HASH)));
+    }
+    return manifest;
+  }
+
+
+  String toJson() throws JSONException {
+    JSONObject notesJson = new JSONObject();
+    for (Map.Entry<Long, NoteEntry> note : notes.entrySet()) {
+      notesJson.put(String.valueOf(note.getKey()), new JSONObject()
+          .put(KEY_LAST_MODIFICATION, note.getValue().getLastModification())
+          .put(KEY_STATE, note.getValue().getState())
+          .put(KEY_CATEGORY, note.getValue().getCategoryId()));
+    }
+    JSONObject categoriesJson = new JSONObject();
+    for (Map.Entry<Long, String> category : categories.entrySet()) {
+      categoriesJson.put(String.valueOf(category.getKey()), category.getValue());
+    }
+    JSONObject attachmentsJson = new JSONObject();
+    for (Map.Entry<String, AttachmentEntry> attachment : attachments.entrySet()) {
+      attachmentsJson.put(attachment.getKey(), new JSONObject()
+          .put(KEY_SIZE, attachment.getValue().getSize())
+          .put(KEY_HASH, attachment.getValue().getHash()));
+    }
+    return new JSONObject()
+        .put(KEY_VERSION, VERSION)
+        .put(KEY_TIMESTAMP, timestamp)
+        .put(KEY_PASSWORD_GENERATION, passwordGeneration)
+        .put(KEY_NOTES, notesJson)
+        .put(KEY_CATEGORIES, categoriesJson)
+        .put(KEY_ATTACHMENTS, attachmentsJson)
+        .toString();
+  }
+
+
+  long getTimestamp() {
+    return timestamp;
+  }
+
+
+  long getPasswordGeneration() {
+    return passwordGeneration;
+  }
+
+
+  /**
+   * Notes embed their category and state, so they must be exported again also when the category is
+   * edited, or they're moved to another one, trashed, archived, unlocked or their reminder fires:
+   * none of these always updates their last modification
+   *
+   * @return True if note was not known or has been changed since this manifest was written
+   */
+  boolean isNoteChanged(Note note) {
+    NoteEntry entry = notes.get(note.get_id());
+    Category category = note.getCategory();
+    return entry == null
+        || entry.getLastModification() != note.getLastModification()
+        || !entry.getState().equals(getState(note))
+        || entry.getCategoryId() != getCategoryId(note)
+        || (category != null && !getFingerprint(category).equals(categories.get(category.getId())));
+  }
+
+
+  void putNote(Note note) {
+    notes.put(note.get_id(), new NoteEntry(note.getLastModification(), getState(note),
+        getCategoryId(note)));
+    if (note.getCategory() != null) {
+      categories.put(note.getCategory().getId(), getFingerprint(note.getCategory()));
+    }
+  }
+
+
+  AttachmentEntry getAttachment(String name) {
+    return attachments.get(name);
+  }
+
+
+  void putAttachment(String name, AttachmentEntry attachment) {
+    attachments.put(name, attachment);
+  }
+
+
+  private static long getCategoryId(Note note) {
+    return note.getCategory() != null ? note.getCategory().getId() : 0;
+  }
+
+
+  private static String getState(Note note) {
+    return Security.md5(note.isArchived() + "\n" + note.isTrashed() + "\n" + note.isLocked() + "\n"
+        + note.getAlarm() + "\n" + note.isReminderFired());
+  }
+
+
+  private static String getFingerprint(Category category) {
+    return Security.md5(category.getName() + "\n" + category.getDescription() + "\n"
+        + category.getColor());
+  }
+
+
+  /**
+   * @return Hex encoded SHA-256 digest of the file content
+   */
+  static String hash(File file) throws IOException {
+    return AttachmentStore.hash(file);
+  }
+
+
+  private static class NoteEntry {
+
+    private final long lastModification;
+    private final String state;
+    private final long categoryId;
+
+
+    NoteEntry(long lastModification, String state, long categoryId) {
+      this.lastModification = lastModification;
+      this.state = state;
+      this.categoryId = categoryId;
+    }
+
+
+    long getLastModification() {
+      return lastModification;
+    }
+
+
+    String getState() {
+      return state;
+    }
+
+
+    long getCategoryId() {
+      return categoryId;
+    }
+
+  }
+
+
+  static class AttachmentEntry {
+
+    private final long size;
+    private final String hash;
+
+
+    AttachmentEntry(long size, String hash) {
+      this.size = size;
+      this.hash = hash;
+    }
+
+
+    long getSize() {
+      return size;
+    }
+
+
+    String getHash() {
+      return hash;
+    }
+
+  }
+
+}
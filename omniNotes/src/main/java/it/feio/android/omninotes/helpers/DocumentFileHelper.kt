@@ -46,6 +46,11 @@ import java.io.IOException
 class DocumentFileHelper {
 
     companion object {
+        /**
+         * Copies buffer size, larger than the default one to reduce calls to storage providers
+         */
+        private const val COPY_BUFFER_SIZE = 64 * 1024
+
         @JvmStatic
         @Throws(IOException::class)
         fun readContent(context: Context, documentFile: DocumentFileCompat): String {
@@ -60,7 +65,7 @@ class DocumentFileHelper {
             try {
                 contentResolver.openInputStream(file.uri).use { `is` ->
                     contentResolver.openOutputStream(Uri.fromFile(destination)).use { os ->
-                        IOUtils.copy(`is`, os)
+                        IOUtils.copyLarge(`is`, os, ByteArray(COPY_BUFFER_SIZE))
                         return true
                     }
                 }
@@ -76,7 +81,7 @@ class DocumentFileHelper {
             try {
                 contentResolver.openInputStream(Uri.fromFile(file)).use { `is` ->
                     contentResolver.openOutputStream(destination.uri).use { os ->
-                        IOUtils.copy(`is`, os)
+                        IOUtils.copyLarge(`is`, os, ByteArray(COPY_BUFFER_SIZE))
                         return true
                     }
                 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_ANSWER;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_GENERATION;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_QUESTION;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_REKEY_CHECK;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_REKEY_SOURCE;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD_REKEY_TARGET;
+
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import com.pixplicity.easyprefs.library.Prefs;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.exceptions.DatabaseException;
+import it.feio.android.omninotes.models.listeners.OnProgressListener;
+import it.feio.android.omninotes.utils.Security;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Converts locked notes when password changes: their content is encrypted again with the new
+ * password, or decrypted when password is removed.
+ * <p>
+ * Contents are converted on a bounded pool of threads, then written all together in a single
+ * transaction, so notes are never left encrypted with different passwords. Notes saved, locked or
+ * unlocked while converting are detected inside that transaction and converted again from what's
+ * stored. The new password is stored inside the same transaction: {@link DbHelper#updateNote} reads
+ * it inside its own one, so saves committed before the conversion are found by it, and later ones
+ * already use the new password. Until the conversion is completed it's marked as pending in
+ * preferences, with the old password and a checksum of one converted note: if the app is killed
+ * meanwhile {@link #resumePendingRekey()} tells if the transaction was committed by checking that
+ * note, then completes or repeats the conversion.
+ */
+@UtilityClass
+public class LockedNotesHelper {
+
+  private static final int MAX_THREADS = 4;
+
+
+  /**
+   * @param newPassword Hash of the new password, null to unlock notes and remove password
+   * @return Number of converted notes
+   */
+  public static synchronized int rekey(String newPassword, OnProgressListener listener) {
+    String oldPassword = Prefs.getString(PREF_PASSWORD, "");
+    Prefs.edit()
+        .putString(PREF_PASSWORD_REKEY_SOURCE, oldPassword)
+        .putString(PREF_PASSWORD_REKEY_TARGET, newPassword == null ? "" : newPassword)
+        .remove(PREF_PASSWORD_REKEY_CHECK)
+        .commit();
+    int converted = convert(oldPassword, newPassword, listener);
+    complete(newPassword);
+    return converted;
+  }
+
+
+  /**
+   * Completes a conversion interrupted before the new password was stored, if any
+   *
+   * @return True if a pending conversion was found
+   */
+  public static synchronized boolean resumePendingRekey() {
+    String target = Prefs.getString(PREF_PASSWORD_REKEY_TARGET, null);
+    if (target == null) {
+      return false;
+    }
+    String newPassword = target.isEmpty() ? null : target;
+    if (!isConverted(Prefs.getString(PREF_PASSWORD_REKEY_CHECK, null))) {
+      LogDelegate.i("Resuming locked notes conversion");
+      // New password could have been stored by a transaction that was never committed
+      String oldPassword = Prefs.getString(PREF_PASSWORD_REKEY_SOURCE,
+          Prefs.getString(PREF_PASSWORD, ""));
+      convert(oldPassword, newPassword, null);
+    }
+    complete(newPassword);
+    return true;
+  }
+
+
+  private static int convert(String oldPassword, String newPassword,
+      OnProgressListener listener) {
+    DbHelper dbHelper = DbHelper.getInstance();
+    Map<Long, String> contents = dbHelper.getLockedNotesContents();
+    Map<Long, String> converted = convert(contents, oldPassword, newPassword, listener);
+
+    SQLiteDatabase database = dbHelper.getDatabase(true);
+    Map<Long, String> updated = new LinkedHashMap<>();
+    int changed = 0;
+    database.beginTransaction();
+    try {
+      for (Entry<Long, String> stored : dbHelper.getLockedNotesContents().entrySet()) {
+        boolean unchanged = contents.containsKey(stored.getKey())
+            && StringUtils.equals(stored.getValue(), contents.get(stored.getKey()));
+        if (unchanged) {
+          updated.put(stored.getKey(), converted.get(stored.getKey()));
+        } else {
+          updated.put(stored.getKey(), convert(stored.getValue(), oldPassword, newPassword));
+          changed++;
+        }
+      }
+      if (!updated.isEmpty()) {
+        Entry<Long, String> check = updated.entrySet().iterator().next();
+        Prefs.edit().putString(PREF_PASSWORD_REKEY_CHECK, check.getKey() + ":"
+            + Security.md5(String.valueOf(check.getValue()))).commit();
+      }
+      dbHelper.updateNotesContents(updated, newPassword != null);
+      storePassword(newPassword);
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+    if (changed > 0) {
+      LogDelegate.i("Converted again " + changed + " locked notes changed while converting");
+    }
+    return updated.size();
+  }
+
+
+  private static Map<Long, String> convert(Map<Long, String> contents, String oldPassword,
+      String newPassword, OnProgressListener listener) {
+    Map<Long, String> converted = new LinkedHashMap<>();
+    int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      CompletionService<Entry<Long, String>> completionService =
+          new ExecutorCompletionService<>(executor);
+      for (Entry<Long, String> content : contents.entrySet()) {
+        completionService.submit(() -> new SimpleEntry<>(content.getKey(),
+            convert(content.getValue(), oldPassword, newPassword)));
+      }
+      for (int i = 1; i <= contents.size(); i++) {
+        Entry<Long, String> content = completionService.take().get();
+        converted.put(content.getKey(), content.getValue());
+        if (listener != null) {
+          listener.onProgress(i, contents.size());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatabaseException("Locked notes conversion interrupted", e);
+    } catch (ExecutionException e) {
+      throw new DatabaseException("Locked notes conversion failed", e);
+    } finally {
+      executor.shutdownNow();
+    }
+    LogDelegate.i("Converted " + converted.size() + " locked notes using " + threads + " threads");
+    return converted;
+  }
+
+
+  private static String convert(String content, String oldPassword, String newPassword) {
+    String decrypted = Security.decrypt(content, oldPassword);
+    return newPassword == null || decrypted == null ? decrypted
+        : Security.encrypt(decrypted, newPassword);
+  }
+
+
+  /**
+   * Conversion transaction was committed if the checked note has already the converted content
+   */
+  private static boolean isConverted(String check) {
+    if (check == null) {
+      return false;
+    }
+    long noteId = Long.parseLong(check.substring(0, check.indexOf(':')));
+    String checksum = check.substring(check.indexOf(':') + 1);
+    String storedContent = DbHelper.getInstance().getStoredContent(noteId);
+    return storedContent != null && checksum.equals(Security.md5(storedContent));
+  }
+
+
+  private static void storePassword(String newPassword) {
+    SharedPreferences.Editor editor = Prefs.edit();
+    if (newPassword == null) {
+      editor.remove(PREF_PASSWORD);
+    } else {
+      editor.putString(PREF_PASSWORD, newPassword);
+    }
+    editor.commit();
+  }
+
+
+  private static void complete(String newPassword) {
+    SharedPreferences.Editor editor = Prefs.edit()
+        .remove(PREF_PASSWORD_REKEY_SOURCE)
+        .remove(PREF_PASSWORD_REKEY_TARGET)
+        .remove(PREF_PASSWORD_REKEY_CHECK)
+        .putLong(PREF_PASSWORD_GENERATION, Prefs.getLong(PREF_PASSWORD_GENERATION, 0) + 1);
+    if (newPassword == null) {
+      editor.remove(PREF_PASSWORD)
+          .remove(PREF_PASSWORD_QUESTION)
+          .remove(PREF_PASSWORD_ANSWER)
+          .remove("settings_password_access");
+    } else {
+      editor.putString(PREF_PASSWORD, newPassword);
+    }
+    editor.commit();
+    DbHelper.getInstance().invalidateDecryptedContents();
+  }
+
+}
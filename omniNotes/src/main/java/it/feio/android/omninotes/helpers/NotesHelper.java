@@ -27,14 +27,18 @@ import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_SKETCH;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_VIDEO;
 
 import it.feio.android.omninotes.OmniNotes;
+import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.count.CountFactory;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteSummary;
 import it.feio.android.omninotes.models.StatsSingleNote;
 import it.feio.android.omninotes.utils.StorageHelper;
 import it.feio.android.omninotes.utils.TagsHelper;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.experimental.UtilityClass;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -49,6 +53,47 @@ public class NotesHelper {
 
   }
 
+  /**
+   * Retrieves the whole note from database when a {@link NoteSummary} is passed, or null if it
+   * has been deleted meanwhile
+   */
+  public static Note toFullNote(Note note) {
+    if (!(note instanceof NoteSummary)) {
+      return note;
+    }
+    Note fullNote = DbHelper.getInstance().getNote(note.get_id());
+    if (fullNote != null) {
+      fullNote.setPasswordChecked(note.isPasswordChecked());
+    }
+    return fullNote;
+  }
+
+  /**
+   * Same as {@link #toFullNote(Note)} but summaries are retrieved all together, keeping order
+   */
+  public static List<Note> toFullNotes(List<Note> notes) {
+    List<Long> summaryIds = new ArrayList<>();
+    for (Note note : notes) {
+      if (note instanceof NoteSummary) {
+        summaryIds.add(note.get_id());
+      }
+    }
+    Map<Long, Note> retrievedNotes = new HashMap<>();
+    for (Note note : DbHelper.getInstance().getNotesById(summaryIds)) {
+      retrievedNotes.put(note.get_id(), note);
+    }
+
+    List<Note> fullNotes = new ArrayList<>();
+    for (Note note : notes) {
+      Note fullNote = note instanceof NoteSummary ? retrievedNotes.get(note.get_id()) : note;
+      if (fullNote != null) {
+        fullNote.setPasswordChecked(note.isPasswordChecked());
+        fullNotes.add(fullNote);
+      }
+    }
+    return fullNotes;
+  }
+
   public static StringBuilder appendContent(Note note, StringBuilder content,
       boolean includeTitle) {
     if (content.length() > 0
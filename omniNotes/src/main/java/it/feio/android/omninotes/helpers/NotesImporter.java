@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
+
+import com.pixplicity.easyprefs.library.Prefs;
+import it.feio.android.omninotes.OmniNotes;
+import it.feio.android.omninotes.R;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.notifications.NotificationsHelper;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.Security;
+import it.feio.android.omninotes.utils.TextHelper;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Saves notes restored from a backup in batches, each one inside a single transaction. Categories
+ * are embedded into every note but each one is saved only once. Must be used by a single thread.
+ */
+class NotesImporter {
+
+  static final int BATCH_SIZE = 200;
+
+  private final DbHelper dbHelper = DbHelper.getInstance();
+  private final String password = Prefs.getString(PREF_PASSWORD, "");
+  private final Set<Long> savedCategories = new HashSet<>();
+  private final List<Note> batch = new ArrayList<>(BATCH_SIZE);
+  private final NotificationsHelper notificationsHelper;
+  private final long start = System.currentTimeMillis();
+  private int imported;
+
+
+  NotesImporter(NotificationsHelper notificationsHelper) {
+    this.notificationsHelper = notificationsHelper;
+  }
+
+
+  /**
+   * Queues a note to be saved with the current batch
+   *
+   * @return False if note can't be restored, as locked ones when no password is set
+   */
+  boolean add(Note note) {
+    if (Boolean.TRUE.equals(note.isLocked())) {
+      if (StringUtils.isEmpty(password)) {
+        return false;
+      }
+      note.setContent(Security.decrypt(note.getContent(), password));
+    }
+
+    Category category = note.getCategory();
+    if (category != null && (category.getId() == null || savedCategories.add(category.getId()))) {
+      dbHelper.updateCategory(category);
+    }
+
+    batch.add(note);
+    if (batch.size() >= BATCH_SIZE) {
+      flush();
+    }
+    return true;
+  }
+
+
+  /**
+   * Saves notes queued so far
+   */
+  void flush() {
+    if (batch.isEmpty()) {
+      return;
+    }
+    dbHelper.updateNotes(batch, false);
+    imported += batch.size();
+    batch.clear();
+    notifyProgress();
+  }
+
+
+  int getImported() {
+    return imported;
+  }
+
+
+  private void notifyProgress() {
+    if (notificationsHelper != null) {
+      long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+      notificationsHelper.updateMessage(
+          TextHelper.capitalize(OmniNotes.getAppContext().getString(R.string.notes)) + " "
+              + imported + " (" + imported * 1000 / elapsed + "/s)");
+    }
+  }
+
+}
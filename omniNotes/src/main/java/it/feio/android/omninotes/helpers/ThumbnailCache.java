@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_IMAGE;
+import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_SKETCH;
+import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_VIDEO;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.Build.VERSION_CODES;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.utils.BitmapHelper;
+import it.feio.android.omninotes.utils.StorageHelper;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Keeps thumbnails of images and videos attachments on disk, so that widgets rows and
+ * notifications read a small file instead of decoding the whole attachment each time. Thumbnails
+ * are named after the attachment file and their size: attachment ID is only assigned when the note
+ * is saved, while file is known as soon as the attachment is created.
+ */
+@UtilityClass
+public class ThumbnailCache {
+
+  public static final int WIDGET_SIZE = 80;
+  public static final int NOTIFICATION_SIZE = 128;
+
+  private static final String DIR_NAME = "thumbnails";
+  private static final String EXTENSION = ".webp";
+  private static final String SIZE_SEPARATOR = "_";
+  private static final int QUALITY = 85;
+
+  /**
+   * @return Cached thumbnail, or null if it was never generated or its attachment changed since
+   */
+  public static Bitmap get(Context context, Attachment attachment, int width, int height) {
+    File thumbnail = getFile(context, attachment, width, height);
+    if (!thumbnail.exists()) {
+      return null;
+    }
+    if (thumbnail.lastModified() < new File(attachment.getUri().getPath()).lastModified()) {
+      FileUtils.deleteQuietly(thumbnail);
+      return null;
+    }
+    Bitmap bitmap = BitmapFactory.decodeFile(thumbnail.getAbsolutePath());
+    if (bitmap == null) {
+      LogDelegate.w("Deleting unreadable thumbnail " + thumbnail);
+      FileUtils.deleteQuietly(thumbnail);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Saves the thumbnail through a temporary file, so concurrent readers never see a partial one
+   */
+  public static void put(Context context, Attachment attachment, int width, int height,
+      Bitmap bitmap) {
+    File thumbnail = getFile(context, attachment, width, height);
+    File tempFile = null;
+    try {
+      tempFile = File.createTempFile(thumbnail.getName(), null, thumbnail.getParentFile());
+      try (OutputStream os = new FileOutputStream(tempFile)) {
+        bitmap.compress(getCompressFormat(), QUALITY, os);
+      }
+      if (!tempFile.renameTo(thumbnail)) {
+        throw new IOException("Can't rename " + tempFile + " to " + thumbnail);
+      }
+    } catch (IOException e) {
+      LogDelegate.w("Error saving thumbnail " + thumbnail, e);
+    } finally {
+      FileUtils.deleteQuietly(tempFile);
+    }
+  }
+
+  /**
+   * Generates the thumbnails shown by widgets and notifications. Must not be called from main
+   * thread.
+   */
+  public static void generate(Context context, Attachment attachment) {
+    if (AttachmentsHelper.typeOf(attachment, MIME_TYPE_IMAGE, MIME_TYPE_VIDEO, MIME_TYPE_SKETCH)) {
+      BitmapHelper.getBitmapFromAttachment(context, attachment, WIDGET_SIZE, WIDGET_SIZE);
+      BitmapHelper
+          .getBitmapFromAttachment(context, attachment, NOTIFICATION_SIZE, NOTIFICATION_SIZE);
+    }
+  }
+
+  /**
+   * Deletes all the thumbnails of the attachment file
+   */
+  public static void invalidate(Context context, Attachment attachment) {
+    String prefix = attachment.getUri().getLastPathSegment() + SIZE_SEPARATOR;
+    File[] thumbnails = getDir(context).listFiles((dir, name) -> name.startsWith(prefix));
+    if (thumbnails != null) {
+      for (File thumbnail : thumbnails) {
+        FileUtils.deleteQuietly(thumbnail);
+      }
+    }
+  }
+
+  /**
+   * Deletes thumbnails whose attachment file doesn't exist anymore
+   */
+  public static void deleteOrphans(Context context, File attachmentsDir) {
+    File[] thumbnails = getDir(context).listFiles();
+    if (thumbnails == null) {
+      return;
+    }
+    for (File thumbnail : thumbnails) {
+      String name = thumbnail.getName();
+      int separator = name.lastIndexOf(SIZE_SEPARATOR);
+      if (separator == -1 || !new File(attachmentsDir, name.substring(0, separator)).exists()) {
+        FileUtils.deleteQuietly(thumbnail);
+      }
+    }
+  }
+
+  static File getFile(Context context, Attachment attachment, int width, int height) {
+    return new File(getDir(context), attachment.getUri().getLastPathSegment() + SIZE_SEPARATOR
+        + width + "x" + height + EXTENSION);
+  }
+
+  private static File getDir(Context context) {
+    File dir = new File(StorageHelper.getCacheDir(context), DIR_NAME);
+    if (!dir.exists()) {
+      dir.mkdirs();
+    }
+    return dir;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static CompressFormat getCompressFormat() {
+    return Build.VERSION.SDK_INT >= VERSION_CODES.R ? CompressFormat.WEBP_LOSSY
+        : CompressFormat.WEBP;
+  }
+
+}
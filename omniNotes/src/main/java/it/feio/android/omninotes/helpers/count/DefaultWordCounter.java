@@ -18,43 +18,58 @@
 package it.feio.android.omninotes.helpers.count;
 
 import it.feio.android.omninotes.models.Note;
-import rx.Observable;
 
 public class DefaultWordCounter implements WordCounter {
 
   @Override
   public int countWords(Note note) {
+    boolean checklist = note.isChecklist();
+    return countWords(note.getTitle(), checklist) + countWords(note.getContent(), checklist);
+  }
+
+  @Override
+  public int countChars(Note note) {
+    boolean checklist = note.isChecklist();
+    return countChars(note.getTitle(), checklist) + countChars(note.getContent(), checklist);
+  }
+
+  /**
+   * Words are sequences of letters, so each letter following a non-letter starts a new one
+   */
+  private int countWords(String field, boolean checklist) {
     int count = 0;
-    String[] fields = {note.getTitle(), note.getContent()};
-    for (String field : fields) {
-      field = sanitizeTextForWordsAndCharsCount(note, field);
-      boolean word = false;
-      int endOfLine = field.length() - 1;
-      for (int i = 0; i < field.length(); i++) {
-        // if the char is a letter, word = true.
-        if (Character.isLetter(field.charAt(i)) && i != endOfLine) {
-          word = true;
-          // if char isn't a letter and there have been letters before, counter goes up.
-        } else if (!Character.isLetter(field.charAt(i)) && word) {
-          count++;
-          word = false;
-          // last word of String; if it doesn't end with a non letter, it  wouldn't count without this.
-        } else if (Character.isLetter(field.charAt(i)) && i == endOfLine) {
+    boolean word = false;
+    int i = 0;
+    while (i < field.length()) {
+      int symbolLength = checklist ? getChecklistSymbolLength(field, i) : 0;
+      if (symbolLength > 0) {
+        i += symbolLength;
+      } else {
+        boolean letter = Character.isLetter(field.charAt(i++));
+        if (letter && !word) {
           count++;
         }
+        word = letter;
       }
     }
     return count;
   }
 
-  @Override
-  public int countChars(Note note) {
-    String titleAndContent = note.getTitle() + "\n" + note.getContent();
-    return Observable
-        .from(sanitizeTextForWordsAndCharsCount(note, titleAndContent).split(""))
-        .map(String::trim)
-        .filter(s -> !s.isEmpty())
-        .count().toBlocking().single();
+  /**
+   * Whitespaces and control chars are not counted
+   */
+  private int countChars(String field, boolean checklist) {
+    int count = 0;
+    int i = 0;
+    while (i < field.length()) {
+      int symbolLength = checklist ? getChecklistSymbolLength(field, i) : 0;
+      if (symbolLength > 0) {
+        i += symbolLength;
+      } else if (field.charAt(i++) > ' ') {
+        count++;
+      }
+    }
+    return count;
   }
 
 }
@@ -18,7 +18,6 @@
 package it.feio.android.omninotes.helpers.count;
 
 import it.feio.android.omninotes.models.Note;
-import rx.Observable;
 
 public class IdeogramsWordCounter implements WordCounter {
 
@@ -29,10 +28,31 @@ public class IdeogramsWordCounter implements WordCounter {
 
   @Override
   public int countChars(Note note) {
-    String titleAndContent = note.getTitle() + "\n" + note.getContent();
-    return Observable
-        .from(sanitizeTextForWordsAndCharsCount(note, titleAndContent).split(""))
-        .filter(s -> !s.matches("\\s"))
-        .count().toBlocking().single();
+    boolean checklist = note.isChecklist();
+    return countChars(note.getTitle(), checklist) + countChars(note.getContent(), checklist);
+  }
+
+  /**
+   * Each char is counted, whitespaces excluded
+   */
+  private int countChars(String field, boolean checklist) {
+    int count = 0;
+    int i = 0;
+    while (i < field.length()) {
+      int symbolLength = checklist ? getChecklistSymbolLength(field, i) : 0;
+      if (symbolLength > 0) {
+        i += symbolLength;
+      } else if (!isWhitespace(field.charAt(i++))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Same chars of regular expressions "\\s" class
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
   }
 }
@@ -17,23 +17,29 @@
 
 package it.feio.android.omninotes.helpers.count;
 
+import static it.feio.android.checklistview.interfaces.Constants.CHECKED_SYM;
+import static it.feio.android.checklistview.interfaces.Constants.UNCHECKED_SYM;
+
 import it.feio.android.omninotes.models.Note;
-import java.util.regex.Pattern;
 
+/**
+ * Counts are performed with a single loop over text chars, skipping checklist symbols inline
+ */
 public interface WordCounter {
 
   int countWords(Note note);
 
   int countChars(Note note);
 
-  default String sanitizeTextForWordsAndCharsCount(Note note, String field) {
-    if (note.isChecklist()) {
-      String regex =
-          "(" + Pattern.quote(it.feio.android.checklistview.interfaces.Constants.CHECKED_SYM) + "|"
-              + Pattern.quote(it.feio.android.checklistview.interfaces.Constants.UNCHECKED_SYM)
-              + ")";
-      field = field.replaceAll(regex, "");
+  /**
+   * @return Length of the checklist symbol found at the given index of the field, 0 if none
+   */
+  default int getChecklistSymbolLength(String field, int index) {
+    if (field.startsWith(CHECKED_SYM, index)) {
+      return CHECKED_SYM.length();
+    } else if (field.startsWith(UNCHECKED_SYM, index)) {
+      return UNCHECKED_SYM.length();
     }
-    return field;
+    return 0;
   }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers.json;
+
+
+/**
+ * Names used to serialize notes. They're the same produced by
+ * {@link it.feio.android.omninotes.commons.models.BaseNote#toJSON()}, so streamed notes and the
+ * ones serialized as a whole can be read by both.
+ */
+interface NoteJsonFields {
+
+  String TITLE = "title";
+  String CONTENT = "content";
+  String CREATION = "creation";
+  String LAST_MODIFICATION = "lastModification";
+  String ARCHIVED = "archived";
+  String TRASHED = "trashed";
+  String ALARM = "alarm";
+  String REMINDER_FIRED = "reminderFired";
+  String RECURRENCE_RULE = "recurrenceRule";
+  String LATITUDE = "latitude";
+  String LONGITUDE = "longitude";
+  String ADDRESS = "address";
+  String CATEGORY = "category";
+  String LOCKED = "locked";
+  String CHECKLIST = "checklist";
+  String ATTACHMENTS = "attachmentsList";
+
+  String CATEGORY_ID = "id";
+  String CATEGORY_NAME = "name";
+  String CATEGORY_DESCRIPTION = "description";
+  String CATEGORY_COLOR = "color";
+
+  String ATTACHMENT_ID = "id";
+  String ATTACHMENT_URI = "uriPath";
+  String ATTACHMENT_NAME = "name";
+  String ATTACHMENT_SIZE = "size";
+  String ATTACHMENT_LENGTH = "length";
+  String ATTACHMENT_MIME_TYPE = "mime_type";
+
+}
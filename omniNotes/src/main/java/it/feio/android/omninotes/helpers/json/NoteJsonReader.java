@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers.json;
+
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ADDRESS;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ALARM;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ARCHIVED;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENTS;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_ID;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_LENGTH;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_MIME_TYPE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_NAME;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_SIZE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_URI;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_COLOR;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_DESCRIPTION;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_ID;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_NAME;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CHECKLIST;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CONTENT;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CREATION;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LAST_MODIFICATION;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LATITUDE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LOCKED;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LONGITUDE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.RECURRENCE_RULE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.REMINDER_FIRED;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.TITLE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.TRASHED;
+
+import android.net.Uri;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+
+/**
+ * Reads notes one at a time from a stream of JSON values, as the ones written by
+ * {@link NoteJsonWriter} or a single note serialized with
+ * {@link it.feio.android.omninotes.commons.models.BaseNote#toJSON()}, so that only the note being
+ * read is kept in memory. Unknown fields are skipped. Underlying reader is not closed and should
+ * be buffered.
+ */
+public class NoteJsonReader {
+
+  private final JsonReader jsonReader;
+
+
+  public NoteJsonReader(Reader in) {
+    jsonReader = new JsonReader(in);
+    // Many top-level values are allowed only in lenient mode
+    jsonReader.setLenient(true);
+  }
+
+
+  public boolean hasNext() throws IOException {
+    return jsonReader.peek() != JsonToken.END_DOCUMENT;
+  }
+
+
+  public Note next() throws IOException {
+    Note note = new Note();
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      String name = jsonReader.nextName();
+      if (jsonReader.peek() == JsonToken.NULL) {
+        jsonReader.nextNull();
+        continue;
+      }
+      switch (name) {
+        case TITLE:
+          note.setTitle(jsonReader.nextString());
+          break;
+        case CONTENT:
+          note.setContent(jsonReader.nextString());
+          break;
+        case CREATION:
+          note.setCreation(jsonReader.nextLong());
+          break;
+        case LAST_MODIFICATION:
+          note.setLastModification(jsonReader.nextLong());
+          break;
+        case ARCHIVED:
+          note.setArchived(nextBoolean());
+          break;
+        case TRASHED:
+          note.setTrashed(nextBoolean());
+          break;
+        case ALARM:
+          note.setAlarm(jsonReader.nextString());
+          break;
+        case REMINDER_FIRED:
+          note.setReminderFired(nextBoolean() ? 1 : 0);
+          break;
+        case RECURRENCE_RULE:
+          note.setRecurrenceRule(jsonReader.nextString());
+          break;
+        case LATITUDE:
+          note.setLatitude(jsonReader.nextDouble());
+          break;
+        case LONGITUDE:
+          note.setLongitude(jsonReader.nextDouble());
+          break;
+        case ADDRESS:
+          note.setAddress(jsonReader.nextString());
+          break;
+        case CATEGORY:
+          note.setCategory(readCategory());
+          break;
+        case LOCKED:
+          note.setLocked(nextBoolean());
+          break;
+        case CHECKLIST:
+          note.setChecklist(nextBoolean());
+          break;
+        case ATTACHMENTS:
+          note.setAttachmentsList(readAttachments());
+          break;
+        default:
+          jsonReader.skipValue();
+      }
+    }
+    jsonReader.endObject();
+    return note;
+  }
+
+
+  private Category readCategory() throws IOException {
+    Category category = new Category();
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      String name = jsonReader.nextName();
+      if (jsonReader.peek() == JsonToken.NULL) {
+        jsonReader.nextNull();
+      } else if (CATEGORY_ID.equals(name)) {
+        category.setId(jsonReader.nextLong());
+      } else if (CATEGORY_NAME.equals(name)) {
+        category.setName(jsonReader.nextString());
+      } else if (CATEGORY_DESCRIPTION.equals(name)) {
+        category.setDescription(jsonReader.nextString());
+      } else if (CATEGORY_COLOR.equals(name)) {
+        category.setColor(jsonReader.nextString());
+      } else {
+        jsonReader.skipValue();
+      }
+    }
+    jsonReader.endObject();
+    return category;
+  }
+
+
+  private ArrayList<Attachment> readAttachments() throws IOException {
+    ArrayList<Attachment> attachments = new ArrayList<>();
+    jsonReader.beginArray();
+    while (jsonReader.hasNext()) {
+      attachments.add(readAttachment());
+    }
+    jsonReader.endArray();
+    return attachments;
+  }
+
+
+  private Attachment readAttachment() throws IOException {
+    long id = 0;
+    String uriPath = null;
+    String name = null;
+    long size = 0;
+    long length = 0;
+    String mimeType = null;
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      String fieldName = jsonReader.nextName();
+      if (jsonReader.peek() == JsonToken.NULL) {
+        jsonReader.nextNull();
+      } else if (ATTACHMENT_ID.equals(fieldName)) {
+        id = jsonReader.nextLong();
+      } else if (ATTACHMENT_URI.equals(fieldName)) {
+        uriPath = jsonReader.nextString();
+      } else if (ATTACHMENT_NAME.equals(fieldName)) {
+        name = jsonReader.nextString();
+      } else if (ATTACHMENT_SIZE.equals(fieldName)) {
+        size = jsonReader.nextLong();
+      } else if (ATTACHMENT_LENGTH.equals(fieldName)) {
+        length = jsonReader.nextLong();
+      } else if (ATTACHMENT_MIME_TYPE.equals(fieldName)) {
+        mimeType = jsonReader.nextString();
+      } else {
+        jsonReader.skipValue();
+      }
+    }
+    jsonReader.endObject();
+    return new Attachment(id, uriPath != null ? Uri.parse(uriPath) : null, name, size, length,
+        mimeType);
+  }
+
+
+  /**
+   * Flags are accepted both as booleans and as numbers, as they're stored into database
+   */
+  private boolean nextBoolean() throws IOException {
+    return jsonReader.peek() == JsonToken.NUMBER ? jsonReader.nextInt() != 0
+        : jsonReader.nextBoolean();
+  }
+
+}
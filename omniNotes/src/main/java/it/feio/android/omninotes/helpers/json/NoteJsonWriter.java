@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers.json;
+
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ADDRESS;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ALARM;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ARCHIVED;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENTS;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_ID;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_LENGTH;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_MIME_TYPE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_NAME;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_SIZE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.ATTACHMENT_URI;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_COLOR;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_DESCRIPTION;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_ID;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CATEGORY_NAME;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CHECKLIST;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CONTENT;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.CREATION;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LAST_MODIFICATION;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LATITUDE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LOCKED;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.LONGITUDE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.RECURRENCE_RULE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.REMINDER_FIRED;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.TITLE;
+import static it.feio.android.omninotes.helpers.json.NoteJsonFields.TRASHED;
+
+import android.util.JsonWriter;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Streams notes, with their category and attachments, as newline delimited JSON: each note is
+ * written directly to the underlying writer as a single line, without building its whole JSON
+ * string first. Underlying writer is not closed and should be buffered.
+ */
+public class NoteJsonWriter implements Flushable {
+
+  private final Writer out;
+  private final JsonWriter jsonWriter;
+
+
+  public NoteJsonWriter(Writer out) {
+    this.out = out;
+    jsonWriter = new JsonWriter(out);
+    // Many top-level values are allowed only in lenient mode
+    jsonWriter.setLenient(true);
+  }
+
+
+  public void write(Note note) throws IOException {
+    jsonWriter.beginObject();
+    writeString(TITLE, note.getTitle());
+    writeString(CONTENT, note.getContent());
+    writeNumber(CREATION, note.getCreation());
+    writeNumber(LAST_MODIFICATION, note.getLastModification());
+    writeBoolean(ARCHIVED, note.isArchived());
+    writeBoolean(TRASHED, note.isTrashed());
+    writeString(ALARM, note.getAlarm());
+    writeBoolean(REMINDER_FIRED, note.isReminderFired());
+    writeString(RECURRENCE_RULE, note.getRecurrenceRule());
+    writeNumber(LATITUDE, note.getLatitude());
+    writeNumber(LONGITUDE, note.getLongitude());
+    writeString(ADDRESS, note.getAddress());
+    if (note.getCategory() != null) {
+      jsonWriter.name(CATEGORY);
+      writeCategory(note.getCategory());
+    }
+    writeBoolean(LOCKED, note.isLocked());
+    writeBoolean(CHECKLIST, note.isChecklist());
+    jsonWriter.name(ATTACHMENTS).beginArray();
+    for (Attachment attachment : note.getAttachmentsList()) {
+      writeAttachment(attachment);
+    }
+    jsonWriter.endArray();
+    jsonWriter.endObject();
+    // JsonWriter doesn't buffer anything, so the separator can be written straight to the output
+    out.write('\n');
+  }
+
+
+  @Override
+  public void flush() throws IOException {
+    jsonWriter.flush();
+  }
+
+
+  private void writeCategory(Category category) throws IOException {
+    jsonWriter.beginObject();
+    writeNumber(CATEGORY_ID, category.getId());
+    writeString(CATEGORY_NAME, category.getName());
+    writeString(CATEGORY_DESCRIPTION, category.getDescription());
+    writeString(CATEGORY_COLOR, category.getColor());
+    jsonWriter.endObject();
+  }
+
+
+  private void writeAttachment(Attachment attachment) throws IOException {
+    jsonWriter.beginObject();
+    writeNumber(ATTACHMENT_ID, attachment.getId());
+    writeString(ATTACHMENT_URI, attachment.getUriPath());
+    writeString(ATTACHMENT_NAME, attachment.getName());
+    writeNumber(ATTACHMENT_SIZE, attachment.getSize());
+    writeNumber(ATTACHMENT_LENGTH, attachment.getLength());
+    writeString(ATTACHMENT_MIME_TYPE, attachment.getMime_type());
+    jsonWriter.endObject();
+  }
+
+
+  // As with notes serialized as a whole null values are omitted
+
+  private void writeString(String name, String value) throws IOException {
+    if (value != null) {
+      jsonWriter.name(name).value(value);
+    }
+  }
+
+
+  private void writeNumber(String name, Number value) throws IOException {
+    if (value != null) {
+      jsonWriter.name(name).value(value);
+    }
+  }
+
+
+  private void writeBoolean(String name, Boolean value) throws IOException {
+    if (value != null) {
+      jsonWriter.name(name).value(value.booleanValue());
+    }
+  }
+
+}
@@ -34,7 +34,9 @@ public class Note extends BaseNote implements Parcelable {
   public static final Parcelable.Creator<Note> CREATOR = new Parcelable.Creator<Note>() {
 
     public Note createFromParcel(Parcel in) {
-      return new Note(in);
+      Note note = new Note(in);
+      // Summaries are marked at the end, so parcels written before are read as full notes
+      return in.readInt() == 1 ? new NoteSummary(note) : note;
     }
 
 
@@ -183,6 +185,7 @@ public class Note extends BaseNote implements Parcelable {
     parcel.writeInt(isLocked() ? 1 : 0);
     parcel.writeInt(isChecklist() ? 1 : 0);
     parcel.writeList(getAttachmentsList());
+    parcel.writeInt(this instanceof NoteSummary ? 1 : 0);
   }
 
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.models;
+
+
+/**
+ * Lightweight note used to draw lists: its content is cut to the preview shown by list items and
+ * its attachments are limited to the first one, used as thumbnail. It must be turned into a full
+ * note with {@link it.feio.android.omninotes.helpers.NotesHelper#toFullNote(Note)} before being
+ * edited or saved. Summaries stay such when parceled.
+ */
+public class NoteSummary extends Note {
+
+  public NoteSummary() {
+    super();
+  }
+
+
+  /**
+   * Used when unparceling, where summaries are read as plain notes first
+   */
+  NoteSummary(Note note) {
+    super(note);
+  }
+
+}
@@ -271,6 +271,15 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
     notifyItemInserted(index);
   }
 
+  /**
+   * Appends a further page of notes to the list
+   */
+  public void addNotes(@NonNull List<Note> newNotes) {
+    int start = notes.size();
+    notes.addAll(newNotes);
+    notifyItemRangeInserted(start, newNotes.size());
+  }
+
   public void remove(List<Note> notes) {
     for (Note note : notes) {
       remove(note);
@@ -15,14 +15,10 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package it.feio.android.omninotes.exceptions;
+package it.feio.android.omninotes.models.listeners;
 
-public class NotesLoadingException extends RuntimeException {
 
-  private static final long serialVersionUID = 1288015037660807104L;
-
-  public NotesLoadingException(String message, Exception e) {
-    super(message, e);
-  }
+public interface OnProgressListener {
 
+  void onProgress(int done, int total);
 }
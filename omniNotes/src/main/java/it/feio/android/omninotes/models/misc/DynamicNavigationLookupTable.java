@@ -18,13 +18,16 @@
 package it.feio.android.omninotes.models.misc;
 
 
+import static it.feio.android.omninotes.db.DbHelper.KEY_COUNTER_ARCHIVED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_COUNTER_REMINDERS;
+import static it.feio.android.omninotes.db.DbHelper.KEY_COUNTER_TRASHED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_COUNTER_UNCATEGORIZED;
+
 import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.async.bus.DynamicNavigationReadyEvent;
 import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
 import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
-import it.feio.android.omninotes.models.Note;
-import java.util.List;
 
 
 public class DynamicNavigationLookupTable {
@@ -50,25 +53,17 @@ public class DynamicNavigationLookupTable {
   }
 
 
+  /**
+   * Reads counters from database, where every notes change already applied its own deltas
+   */
   public void update() {
-    ((Runnable) () -> {
-      archived = trashed = uncategorized = reminders = 0;
-      List<Note> notes = DbHelper.getInstance().getAllNotes(false);
-      for (int i = 0; i < notes.size(); i++) {
-        if (notes.get(i).isTrashed()) {
-          trashed++;
-        } else if (notes.get(i).isArchived()) {
-          archived++;
-        } else if (notes.get(i).getAlarm() != null) {
-          reminders++;
-        }
-        if (notes.get(i).getCategory() == null || notes.get(i).getCategory().getId().equals(0L)) {
-          uncategorized++;
-        }
-      }
-      EventBus.getDefault().post(new DynamicNavigationReadyEvent());
-      LogDelegate.d("Dynamic menu finished counting items");
-    }).run();
+    DbHelper dbHelper = DbHelper.getInstance();
+    archived = dbHelper.getNavigationCounter(KEY_COUNTER_ARCHIVED);
+    trashed = dbHelper.getNavigationCounter(KEY_COUNTER_TRASHED);
+    uncategorized = dbHelper.getNavigationCounter(KEY_COUNTER_UNCATEGORIZED);
+    reminders = dbHelper.getNavigationCounter(KEY_COUNTER_REMINDERS);
+    EventBus.getDefault().post(new DynamicNavigationReadyEvent());
+    LogDelegate.d("Dynamic menu finished counting items");
   }
 
 
@@ -33,6 +33,7 @@ import it.feio.android.omninotes.SnoozeActivity;
 import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.IntentHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.helpers.ThumbnailCache;
 import it.feio.android.omninotes.helpers.notifications.NotificationChannels.NotificationChannelNames;
 import it.feio.android.omninotes.helpers.notifications.NotificationsHelper;
 import it.feio.android.omninotes.models.Attachment;
@@ -89,8 +90,8 @@ public class AlarmReceiver extends BroadcastReceiver {
     List<Attachment> attachments = note.getAttachmentsList();
     if (!attachments.isEmpty() && !attachments.get(0).getMime_type().equals(MIME_TYPE_FILES)) {
       Bitmap notificationIcon = BitmapHelper
-          .getBitmapFromAttachment(mContext, note.getAttachmentsList().get(0), 128,
-              128);
+          .getBitmapFromAttachment(mContext, note.getAttachmentsList().get(0),
+              ThumbnailCache.NOTIFICATION_SIZE, ThumbnailCache.NOTIFICATION_SIZE);
       notificationsHelper.setLargeIcon(notificationIcon);
     }
 
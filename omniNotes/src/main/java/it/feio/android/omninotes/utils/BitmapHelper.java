@@ -34,6 +34,7 @@ import com.bumptech.glide.request.RequestOptions;
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.R;
 import it.feio.android.omninotes.helpers.AttachmentsHelper;
+import it.feio.android.omninotes.helpers.ThumbnailCache;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.simplegallery.util.BitmapUtils;
 import java.util.concurrent.ExecutionException;
@@ -46,14 +47,21 @@ public class BitmapHelper {
   private static final String ANDROID_RESOURCE = "android.resource://";
 
   /**
-   * Retrieves a the bitmap relative to attachment based on mime type
+   * Retrieves a the bitmap relative to attachment based on mime type. Images and videos ones are
+   * read from {@link ThumbnailCache} when already decoded once with the same size.
    */
   public static Bitmap getBitmapFromAttachment(Context mContext, Attachment mAttachment, int width,
       int height) {
     Bitmap bmp = null;
 
     if (AttachmentsHelper.typeOf(mAttachment, MIME_TYPE_VIDEO, MIME_TYPE_IMAGE, MIME_TYPE_SKETCH)) {
-      bmp = getImageBitmap(mContext, mAttachment, width, height);
+      bmp = ThumbnailCache.get(mContext, mAttachment, width, height);
+      if (bmp == null) {
+        bmp = getImageBitmap(mContext, mAttachment, width, height);
+        if (bmp != null) {
+          ThumbnailCache.put(mContext, mAttachment, width, height, bmp);
+        }
+      }
 
     } else if (MIME_TYPE_AUDIO.equals(mAttachment.getMime_type())) {
       bmp = ThumbnailUtils.extractThumbnail(
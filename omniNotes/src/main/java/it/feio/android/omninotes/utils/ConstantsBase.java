@@ -83,6 +83,11 @@ public interface ConstantsBase {
   String PREF_PASSWORD = "password";
   String PREF_PASSWORD_QUESTION = "password_question";
   String PREF_PASSWORD_ANSWER = "password_answer";
+  String PREF_PASSWORD_REKEY_SOURCE = "password_rekey_source";
+  String PREF_PASSWORD_REKEY_TARGET = "password_rekey_target";
+  String PREF_PASSWORD_REKEY_CHECK = "password_rekey_check";
+  String PREF_PASSWORD_GENERATION = "password_generation";
+  String PREF_NOTE_TAGS_REBUILD_PENDING = "note_tags_rebuild_pending";
   String PREF_KEEP_CHECKED = "keep_checked";
   String PREF_KEEP_CHECKMARKS = "show_checkmarks";
   String PREF_EXPANDED_VIEW = "expanded_view";
@@ -104,6 +109,9 @@ public interface ConstantsBase {
   String PREF_ENABLE_AUTOBACKUP = "settings_enable_autobackup";
   String PREF_ENABLE_FILE_LOGGING = "settings_enable_file_logging";
   String PREF_BACKUP_FOLDER_URI = "backup_folder";
+  String PREF_BACKUP_ARCHIVE = "settings_backup_archive";
+  String PREF_BACKUP_INCREMENTAL = "settings_backup_incremental";
+  String PREF_ATTACHMENTS_DEDUPLICATION = "settings_attachments_deduplication";
 
   String MIME_TYPE_IMAGE = "image/jpeg";
   String MIME_TYPE_AUDIO = "audio/amr";
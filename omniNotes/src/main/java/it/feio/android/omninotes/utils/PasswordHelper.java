@@ -33,8 +33,9 @@ import com.pixplicity.easyprefs.library.Prefs;
 import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.R;
 import it.feio.android.omninotes.async.bus.PasswordRemovedEvent;
-import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.LockedNotesHelper;
 import it.feio.android.omninotes.models.PasswordValidator;
+import it.feio.android.omninotes.models.listeners.OnProgressListener;
 import lombok.experimental.UtilityClass;
 import rx.Observable;
 import rx.android.schedulers.AndroidSchedulers;
@@ -138,24 +139,28 @@ public class PasswordHelper {
   }
 
 
+  /**
+   * Stores a new password, with its recovery question and answer, then encrypts locked notes again
+   * with it. Must be called from a background thread.
+   *
+   * @return Number of locked notes encrypted again
+   */
+  public static int setPassword(String password, String question, String answer,
+      OnProgressListener listener) {
+    Prefs.edit()
+        .putString(PREF_PASSWORD_QUESTION, question)
+        .putString(PREF_PASSWORD_ANSWER, Security.md5(answer))
+        .apply();
+    return LockedNotesHelper.rekey(Security.md5(password), listener);
+  }
+
+
   public static void removePassword() {
     Observable
-        .from(DbHelper.getInstance().getNotesWithLock(true))
+        .fromCallable(() -> LockedNotesHelper.rekey(null, null))
         .subscribeOn(Schedulers.newThread())
         .observeOn(AndroidSchedulers.mainThread())
-        .doOnNext(note -> {
-          note.setLocked(false);
-          DbHelper.getInstance().updateNote(note, false);
-        })
-        .doOnCompleted(() -> {
-          Prefs.edit()
-              .remove(PREF_PASSWORD)
-              .remove(PREF_PASSWORD_QUESTION)
-              .remove(PREF_PASSWORD_ANSWER)
-              .remove("settings_password_access")
-              .apply();
-          EventBus.getDefault().post(new PasswordRemovedEvent());
-        })
+        .doOnCompleted(() -> EventBus.getDefault().post(new PasswordRemovedEvent()))
         .subscribe();
   }
 }
@@ -47,16 +47,25 @@ class Security private constructor(){
             }
         }
 
+        /**
+         * Keys derived from the last used passwords, being the same for all the notes. Two of them
+         * are kept to convert notes from the old password to the new one.
+         */
+        private val derivedKeys = object : LinkedHashMap<String, SecretKey>(4, 0.75f, true) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, SecretKey>?) =
+                size > 2
+        }
+
+        // Cipher is not thread safe, so each thread gets its own
+        private val ciphers = object : ThreadLocal<Cipher>() {
+            override fun initialValue(): Cipher = Cipher.getInstance("DES")
+        }
+
         @JvmStatic
         fun encrypt(value: String, password: String): String? {
             return try {
-                val keySpec = DESKeySpec(password.toByteArray(StandardCharsets.UTF_8))
-                val keyFactory = SecretKeyFactory.getInstance("DES")
-                val key = keyFactory.generateSecret(keySpec)
                 val clearText = value.toByteArray(StandardCharsets.UTF_8)
-                // Cipher is not thread safe
-                val cipher = Cipher.getInstance("DES")
-                cipher.init(Cipher.ENCRYPT_MODE, key)
+                val cipher = getCipher(Cipher.ENCRYPT_MODE, password)
                 Base64.encodeToString(cipher.doFinal(clearText), Base64.DEFAULT)
             } catch (e: Exception) {
                 LogDelegate.e("Something is gone wrong encrypting", e)
@@ -67,13 +76,8 @@ class Security private constructor(){
         @JvmStatic
         fun decrypt(value: String?, password: String): String? {
             return try {
-                val keySpec = DESKeySpec(password.toByteArray(StandardCharsets.UTF_8))
-                val keyFactory = SecretKeyFactory.getInstance("DES")
-                val key = keyFactory.generateSecret(keySpec)
                 val encryptedPwdBytes = Base64.decode(value, Base64.DEFAULT)
-                // cipher is not thread safe
-                val cipher = Cipher.getInstance("DES")
-                cipher.init(Cipher.DECRYPT_MODE, key)
+                val cipher = getCipher(Cipher.DECRYPT_MODE, password)
                 val decrypedValueBytes = cipher.doFinal(encryptedPwdBytes)
                 String(decrypedValueBytes)
             } catch (e: Exception) {
@@ -82,5 +86,20 @@ class Security private constructor(){
             }
         }
 
+        private fun getCipher(mode: Int, password: String): Cipher {
+            val cipher = ciphers.get()!!
+            cipher.init(mode, getKey(password))
+            return cipher
+        }
+
+        private fun getKey(password: String): SecretKey {
+            synchronized(derivedKeys) {
+                return derivedKeys.getOrPut(password) {
+                    val keySpec = DESKeySpec(password.toByteArray(StandardCharsets.UTF_8))
+                    SecretKeyFactory.getInstance("DES").generateSecret(keySpec)
+                }
+            }
+        }
+
     }
-}
\ No newline at end of file
+}
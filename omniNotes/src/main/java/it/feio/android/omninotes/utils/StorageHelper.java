@@ -29,6 +29,7 @@ import android.widget.Toast;
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.R;
 import it.feio.android.omninotes.exceptions.unchecked.ExternalDirectoryCreationException;
+import it.feio.android.omninotes.helpers.AttachmentStore;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Attachment;
 import java.io.File;
@@ -442,7 +443,9 @@ public class StorageHelper {
         .toLowerCase(
             Locale.getDefault());
     File f;
-    if (moveSource) {
+    if (AttachmentStore.isEnabled() && checkStorage()) {
+      f = createStoredAttachmentFile(mContext, uri, extension, moveSource);
+    } else if (moveSource) {
       f = createNewAttachmentFile(mContext, extension);
       try {
         FileUtils.moveFile(new File(uri.getPath()), f);
@@ -463,6 +466,22 @@ public class StorageHelper {
   }
 
 
+  /**
+   * Stores the attachment file by content, sharing it with other attachments with the same data
+   */
+  private static File createStoredAttachmentFile(Context mContext, Uri uri, String extension,
+      boolean moveSource) {
+    try {
+      return moveSource
+          ? AttachmentStore.store(new File(uri.getPath()), extension)
+          : AttachmentStore.store(mContext, uri, extension);
+    } catch (IOException e) {
+      LogDelegate.e("Error storing " + uri, e);
+      return null;
+    }
+  }
+
+
   /**
    * Creates new attachment from web content
    */
@@ -41,19 +41,79 @@ public class TagsHelper {
 
 
   public static HashMap<String, Integer> retrieveTags(Note note) {
+    return retrieveTags(note.getTitle() + " " + note.getContent());
+  }
+
+
+  /**
+   * Retrieves hashtags contained into text, with their number of occurrences. Text is scanned
+   * once in place: words are delimited by spaces and new lines, words without any hash sign are
+   * skipped without building any string, and only remaining candidates whose shape isn't already
+   * known to be a whole hashtag are checked through {@link UrlCompleter#parseHashtag(String)}.
+   */
+  public static HashMap<String, Integer> retrieveTags(String text) {
     HashMap<String, Integer> tagsMap = new HashMap<>();
-    String[] words = (note.getTitle() + " " + note.getContent()).replaceAll("\n", " ").trim()
-        .split(" ");
-    for (String word : words) {
-      String parsedHashtag = UrlCompleter.parseHashtag(word);
-      if (StringUtils.isNotEmpty(parsedHashtag)) {
-        int count = tagsMap.get(parsedHashtag) == null ? 0 : tagsMap.get(parsedHashtag);
-        tagsMap.put(parsedHashtag, ++count);
+    // Same bounds of a trimmed text
+    int start = 0;
+    int end = text.length();
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    int wordStart = start;
+    boolean hashFound = false;
+    for (int i = start; i <= end; i++) {
+      char c = i < end ? text.charAt(i) : ' ';
+      if (c == ' ' || c == '\n') {
+        if (hashFound) {
+          addTag(tagsMap, isPlainHashtag(text, wordStart, i)
+              ? text.substring(wordStart, i)
+              : UrlCompleter.parseHashtag(text.substring(wordStart, i)));
+        }
+        wordStart = i + 1;
+        hashFound = false;
+      } else if (c == '#') {
+        hashFound = true;
       }
     }
     return tagsMap;
   }
 
+
+  /**
+   * Hash sign followed by a letter and then only by letters or digits: such a word is a hashtag
+   * as a whole
+   */
+  static boolean isPlainHashtag(CharSequence text, int start, int end) {
+    if (end - start < 2 || text.charAt(start) != '#') {
+      return false;
+    }
+    int codePoint = Character.codePointAt(text, start + 1);
+    if (!Character.isLetter(codePoint)) {
+      return false;
+    }
+    for (int i = start + 1 + Character.charCount(codePoint); i < end; i += Character
+        .charCount(codePoint)) {
+      codePoint = Character.codePointAt(text, i);
+      if (!Character.isLetterOrDigit(codePoint)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  private static void addTag(HashMap<String, Integer> tagsMap, String tag) {
+    if (StringUtils.isNotEmpty(tag)) {
+      Integer count = tagsMap.get(tag);
+      tagsMap.put(tag, count == null ? 1 : count + 1);
+    }
+  }
+
+
   public static Pair<String, List<Tag>> addTagToNote(List<Tag> tags, Integer[] selectedTags,
       Note note) {
     StringBuilder sbTags = new StringBuilder();
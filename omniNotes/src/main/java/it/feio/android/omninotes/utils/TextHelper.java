@@ -41,13 +41,17 @@ import java.util.regex.Pattern;
 
 public class TextHelper {
 
+  /**
+   * Maximum length of the content shown in notes lists
+   */
+  public static final int CONTENT_SUBSTRING_LENGTH = 300;
+
+
   /**
    *
    */
   public static Spanned[] parseTitleAndContent(Context mContext, Note note) {
 
-    final int CONTENT_SUBSTRING_LENGTH = 300;
-
     String titleText = note.getTitle();
     String contentText = limit(note.getContent().trim(), CONTENT_SUBSTRING_LENGTH, false, true);
 
@@ -17,7 +17,7 @@
 
 package it.feio.android.omninotes.widget;
 
-import static it.feio.android.omninotes.utils.ConstantsBase.INTENT_NOTE;
+import static it.feio.android.omninotes.utils.ConstantsBase.INTENT_KEY;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_COLORS_APP_DEFAULT;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_WIDGET_PREFIX;
 
@@ -38,10 +38,17 @@ import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
-import it.feio.android.omninotes.utils.BitmapHelper;
 import it.feio.android.omninotes.utils.Navigation;
 import it.feio.android.omninotes.utils.TextHelper;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 
 public class ListRemoteViewsFactory implements RemoteViewsFactory {
@@ -49,12 +56,16 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
   private static final String SET_BACKGROUND_COLOR = "setBackgroundColor";
   private static boolean showThumbnails = true;
   private static boolean showTimestamps = true;
-  private final int WIDTH = 80;
-  private final int HEIGHT = 80;
+  // Factories of the widgets currently shown, to be told which notes changed
+  private static final Set<ListRemoteViewsFactory> factories = Collections
+      .newSetFromMap(new WeakHashMap<>());
   private OmniNotes app;
   private int appWidgetId;
-  private List<Note> notes;
+  private List<Note> notes = Collections.emptyList();
+  private String condition;
   private int navigation;
+  private final Set<Long> changedNoteIds = new HashSet<>();
+  private boolean reloadAll = true;
 
   public ListRemoteViewsFactory(Application app, Intent intent) {
     this.app = (OmniNotes) app;
@@ -69,24 +80,102 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
     showTimestamps = timestamps;
   }
 
+  /**
+   * Records notes changes to be applied by widgets at their next data set change
+   *
+   * @param noteIds Changed notes IDs, or null if unknown to make widgets reload all of their notes
+   */
+  public static void notifyNotesChanged(Collection<Long> noteIds) {
+    synchronized (factories) {
+      for (ListRemoteViewsFactory factory : factories) {
+        factory.addChangedNotes(noteIds);
+      }
+    }
+  }
+
+  private synchronized void addChangedNotes(Collection<Long> noteIds) {
+    if (noteIds == null) {
+      reloadAll = true;
+    } else {
+      changedNoteIds.addAll(noteIds);
+    }
+  }
+
   @Override
   public void onCreate() {
     LogDelegate.d("Created widget " + appWidgetId);
-    String condition = Prefs.getString(PREF_WIDGET_PREFIX + appWidgetId, "");
-    notes = DbHelper.getInstance().getNotes(condition, true);
+    synchronized (factories) {
+      factories.add(this);
+    }
+    loadNotes();
   }
 
   @Override
   public void onDataSetChanged() {
     LogDelegate.d("onDataSetChanged widget " + appWidgetId);
     navigation = Navigation.getNavigation();
+    loadNotes();
+    WidgetBitmapCache.getInstance().logStats();
+  }
+
+  /**
+   * Keeps the rows already loaded whose note didn't change, reloading only changed and new ones.
+   * Notes IDs and order are always read again, as they're cheap to retrieve, and rows are compared
+   * by last modification too, so changes not notified are applied anyway.
+   */
+  private void loadNotes() {
+    Set<Long> changed;
+    boolean all;
+    synchronized (this) {
+      changed = new HashSet<>(changedNoteIds);
+      changedNoteIds.clear();
+      all = reloadAll;
+      reloadAll = false;
+    }
+    DbHelper dbHelper = DbHelper.getInstance();
+    String currentCondition = Prefs.getString(PREF_WIDGET_PREFIX + appWidgetId, "");
+    if (all || !currentCondition.equals(condition)) {
+      condition = currentCondition;
+      notes = dbHelper.getNoteSummaries(condition, true);
+      return;
+    }
 
-    String condition = Prefs.getString(PREF_WIDGET_PREFIX + appWidgetId, "");
-    notes = DbHelper.getInstance().getNotes(condition, true);
+    Map<Long, Long> lastModifications = dbHelper.getNotesLastModification(condition, true);
+    Map<Long, Note> rows = new HashMap<>();
+    for (Note note : notes) {
+      Long lastModification = lastModifications.get(note.get_id());
+      if (!changed.contains(note.get_id()) && lastModification != null
+          && lastModification.equals(note.getLastModification())) {
+        rows.put(note.get_id(), note);
+      }
+    }
+    List<Long> missingIds = new ArrayList<>();
+    for (Long noteId : lastModifications.keySet()) {
+      if (!rows.containsKey(noteId)) {
+        missingIds.add(noteId);
+      }
+    }
+    for (Note note : dbHelper.getNoteSummariesById(missingIds)) {
+      rows.put(note.get_id(), note);
+    }
+
+    List<Note> updatedNotes = new ArrayList<>(lastModifications.size());
+    for (Long noteId : lastModifications.keySet()) {
+      Note note = rows.get(noteId);
+      if (note != null) {
+        updatedNotes.add(note);
+      }
+    }
+    notes = updatedNotes;
+    LogDelegate.v("Widget " + appWidgetId + " reloaded " + missingIds.size() + " of "
+        + notes.size() + " notes");
   }
 
   @Override
   public void onDestroy() {
+    synchronized (factories) {
+      factories.remove(this);
+    }
     Prefs.edit().remove(PREF_WIDGET_PREFIX + appWidgetId).apply();
   }
 
@@ -110,7 +199,7 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
 
     if (!note.isLocked() && showThumbnails && !note.getAttachmentsList().isEmpty()) {
       Attachment mAttachment = note.getAttachmentsList().get(0);
-      Bitmap bmp = BitmapHelper.getBitmapFromAttachment(app, mAttachment, WIDTH, HEIGHT);
+      Bitmap bmp = WidgetBitmapCache.getInstance().get(app, note, mAttachment);
       row.setBitmap(R.id.attachmentThumbnail, "setImageBitmap", bmp);
       row.setInt(R.id.attachmentThumbnail, "setVisibility", View.VISIBLE);
     } else {
@@ -124,8 +213,9 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
 
     // Next, set a fill-intent, which will be used to fill in the pending intent template
     // that is set on the collection view in StackWidgetProvider.
+    // Note ID is passed instead of the note itself, that is just a summary
     Bundle extras = new Bundle();
-    extras.putParcelable(INTENT_NOTE, note);
+    extras.putLong(INTENT_KEY, note.get_id());
     Intent fillInIntent = new Intent();
     fillInIntent.putExtras(extras);
     // Make it possible to distinguish the individual on-click
@@ -147,12 +237,12 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
 
   @Override
   public long getItemId(int position) {
-    return position;
+    return notes.get(position).get_id();
   }
 
   @Override
   public boolean hasStableIds() {
-    return false;
+    return true;
   }
 
   private void color(Note note, RemoteViews row) {
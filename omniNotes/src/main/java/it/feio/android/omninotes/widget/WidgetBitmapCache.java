@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+import de.greenrobot.event.EventBus;
+import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.helpers.ThumbnailCache;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.BitmapHelper;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Thumbnails shown by list widgets rows, kept in memory by attachment ID so that scrolling and
+ * refreshing widgets doesn't read them again from storage. Bitmaps of notes that are updated are
+ * dropped, and cached ones are shared by all the widgets of the process. Notes are mapped to their
+ * cached attachment only while its bitmap stays into the cache.
+ */
+class WidgetBitmapCache {
+
+  // Bounded by bytes, about 1/16 of the available heap
+  private static final int MAX_SIZE = (int) Math.min(Runtime.getRuntime().maxMemory() / 16,
+      Integer.MAX_VALUE);
+
+  private static WidgetBitmapCache instance;
+
+  private final Map<Long, Long> notesAttachments = new HashMap<>();
+  private final LruCache<Long, Bitmap> bitmaps = new LruCache<Long, Bitmap>(MAX_SIZE) {
+    @Override
+    protected int sizeOf(Long attachmentId, Bitmap bitmap) {
+      return bitmap.getByteCount();
+    }
+
+    @Override
+    protected void entryRemoved(boolean evicted, Long attachmentId, Bitmap oldBitmap,
+        Bitmap newBitmap) {
+      if (newBitmap == null) {
+        synchronized (notesAttachments) {
+          notesAttachments.values().remove(attachmentId);
+        }
+      }
+    }
+  };
+
+
+  private WidgetBitmapCache() {
+    EventBus.getDefault().register(this);
+  }
+
+
+  static synchronized WidgetBitmapCache getInstance() {
+    if (instance == null) {
+      instance = new WidgetBitmapCache();
+    }
+    return instance;
+  }
+
+
+  /**
+   * Returns the widget thumbnail of the attachment, decoding it only if not already cached.
+   * Attachments not saved yet have no ID and are never cached.
+   */
+  Bitmap get(Context context, Note note, Attachment attachment) {
+    Long attachmentId = attachment.getId();
+    Bitmap bitmap = attachmentId != null ? bitmaps.get(attachmentId) : null;
+    if (bitmap == null) {
+      bitmap = BitmapHelper.getBitmapFromAttachment(context, attachment,
+          ThumbnailCache.WIDGET_SIZE, ThumbnailCache.WIDGET_SIZE);
+      if (bitmap != null && attachmentId != null) {
+        bitmaps.put(attachmentId, bitmap);
+        synchronized (notesAttachments) {
+          notesAttachments.put(note.get_id(), attachmentId);
+        }
+      }
+    }
+    return bitmap;
+  }
+
+
+  void invalidate(Note note) {
+    Long attachmentId;
+    synchronized (notesAttachments) {
+      attachmentId = notesAttachments.remove(note.get_id());
+    }
+    if (attachmentId != null) {
+      bitmaps.remove(attachmentId);
+    }
+  }
+
+
+  int getHitCount() {
+    return bitmaps.hitCount();
+  }
+
+
+  int getMissCount() {
+    return bitmaps.missCount();
+  }
+
+
+  int getNotesCount() {
+    synchronized (notesAttachments) {
+      return notesAttachments.size();
+    }
+  }
+
+
+  void logStats() {
+    LogDelegate.v("Widget bitmaps cache: " + getHitCount() + " hits, " + getMissCount()
+        + " misses, " + bitmaps.size() + " bytes, " + getNotesCount() + " notes");
+  }
+
+
+  public void onEvent(NotesUpdatedEvent event) {
+    for (Note note : event.getNotes()) {
+      invalidate(note);
+    }
+  }
+
+}
@@ -78,6 +78,37 @@ public class BaseUnitTest {
     }
   }
 
+  /**
+   * Runs the code as many times as requested after a warm up of the same length
+   *
+   * @return Allocated bytes, negative if not supported by the JVM
+   */
+  protected static long measureAllocations(Runnable runnable, int iterations) {
+    for (int i = 0; i < iterations; i++) {
+      runnable.run();
+    }
+    long allocatedBefore = getAllocatedBytes();
+    for (int i = 0; i < iterations; i++) {
+      runnable.run();
+    }
+    return allocatedBefore < 0 ? -1 : getAllocatedBytes() - allocatedBefore;
+  }
+
+  /**
+   * Looked up reflectively since management API is available on desktop JVMs only
+   */
+  private static long getAllocatedBytes() {
+    try {
+      Object threadMXBean = Class.forName("java.lang.management.ManagementFactory")
+          .getMethod("getThreadMXBean").invoke(null);
+      return (long) Class.forName("com.sun.management.ThreadMXBean")
+          .getMethod("getThreadAllocatedBytes", long.class)
+          .invoke(threadMXBean, Thread.currentThread().getId());
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      return -1;
+    }
+  }
+
   protected Note getNote(Long id, String title, String content) {
     Note note = new Note();
     note.set_id(id);
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class AttachmentsHelperTest {
+
+  private static final long NOW = 1_600_000_000_000L;
+
+  @Rule
+  public TemporaryFolder attachmentsDir = new TemporaryFolder();
+
+  @Test
+  public void deleteUnreferencedFiles() throws IOException {
+    File referenced = createFile("referenced.jpg", 10, NOW - 10_000);
+    File unreferenced = createFile("unreferenced.jpg", 20, NOW - 10_000);
+    File recent = createFile("recent.jpg", 30, NOW + 10_000);
+    File directory = attachmentsDir.newFolder("directory");
+
+    long reclaimed = AttachmentsHelper.deleteUnreferencedFiles(attachmentsDir.getRoot(),
+        Collections.singleton(referenced.getName()), NOW);
+
+    assertEquals(20, reclaimed);
+    assertTrue(referenced.exists());
+    assertFalse(unreferenced.exists());
+    assertTrue(recent.exists());
+    assertTrue(directory.exists());
+  }
+
+  @Test
+  public void deleteUnreferencedFilesWithoutDirectory() {
+    assertEquals(0, AttachmentsHelper.deleteUnreferencedFiles(null,
+        Collections.emptySet(), NOW));
+  }
+
+  private File createFile(String name, int size, long lastModified) throws IOException {
+    File file = attachmentsDir.newFile(name);
+    FileUtils.writeByteArrayToFile(file, new byte[size]);
+    assertTrue(file.setLastModified(lastModified));
+    return file;
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2013-2022 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.helpers.count;
+
+import static it.feio.android.checklistview.interfaces.Constants.CHECKED_SYM;
+import static it.feio.android.checklistview.interfaces.Constants.UNCHECKED_SYM;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.feio.android.omninotes.BaseUnitTest;
+import it.feio.android.omninotes.models.Note;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import rx.Observable;
+
+/**
+ * Compares word counters with their previous implementations, based on regular expressions and
+ * streams, over random texts
+ */
+public class WordCounterTest extends BaseUnitTest {
+
+  private static final String ALPHABET = "aZ9 \t\n\r\u000B\f\u0000.,-_[]x这是テ́😀";
+
+  private final Random random = new Random(42);
+
+
+  @Test
+  public void defaultWordCounterMatchesPreviousImplementation() {
+    WordCounter wordCounter = new DefaultWordCounter();
+    for (int i = 0; i < 5000; i++) {
+      Note note = getRandomNote();
+      assertEquals(describe(note), countWordsByLetters(note), wordCounter.countWords(note));
+      assertEquals(describe(note), countCharsTrimming(note), wordCounter.countChars(note));
+    }
+  }
+
+  @Test
+  public void ideogramsWordCounterMatchesPreviousImplementation() {
+    WordCounter wordCounter = new IdeogramsWordCounter();
+    for (int i = 0; i < 5000; i++) {
+      Note note = getRandomNote();
+      assertEquals(describe(note), countCharsExcludingSpaces(note), wordCounter.countWords(note));
+      assertEquals(describe(note), countCharsExcludingSpaces(note), wordCounter.countChars(note));
+    }
+  }
+
+  @Test
+  public void wordCountersBenchmark() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      content.append(i % 2 == 0 ? CHECKED_SYM : UNCHECKED_SYM)
+          .append("checklist item number ").append(i).append(" 这是中文测试\n");
+    }
+    Note note = getNote(1L, "benchmark", content.toString());
+    note.setChecklist(true);
+    int iterations = 2000;
+    WordCounter defaultWordCounter = new DefaultWordCounter();
+    WordCounter ideogramsWordCounter = new IdeogramsWordCounter();
+
+    // Allocations are compared, not elapsed time, that depends on the machine load
+    long previous = measureAllocations(() -> {
+      countWordsByLetters(note);
+      countCharsTrimming(note);
+      countCharsExcludingSpaces(note);
+    }, iterations);
+    long current = measureAllocations(() -> {
+      defaultWordCounter.countWords(note);
+      defaultWordCounter.countChars(note);
+      ideogramsWordCounter.countChars(note);
+    }, iterations);
+
+    if (previous >= 0) {
+      assertTrue("Counting allocated " + current / iterations + " bytes per call, previously "
+          + previous / iterations, current < previous / 10);
+    }
+  }
+
+  private Note getRandomNote() {
+    Note note = getNote(1L, getRandomText(), getRandomText());
+    note.setChecklist(random.nextBoolean());
+    return note;
+  }
+
+  private String getRandomText() {
+    StringBuilder text = new StringBuilder();
+    int length = random.nextInt(30);
+    for (int i = 0; i < length; i++) {
+      int pick = random.nextInt(ALPHABET.length() + 2);
+      if (pick == ALPHABET.length()) {
+        text.append(CHECKED_SYM);
+      } else if (pick == ALPHABET.length() + 1) {
+        text.append(UNCHECKED_SYM);
+      } else {
+        text.append(ALPHABET.charAt(pick));
+      }
+    }
+    return text.toString();
+  }
+
+  private String describe(Note note) {
+    return "Title: '" + note.getTitle() + "', content: '" + note.getContent() + "', checklist: "
+        + note.isChecklist();
+  }
+
+  private String sanitize(Note note, String field) {
+    if (note.isChecklist()) {
+      String regex = "(" + Pattern.quote(CHECKED_SYM) + "|" + Pattern.quote(UNCHECKED_SYM) + ")";
+      field = field.replaceAll(regex, "");
+    }
+    return field;
+  }
+
+  private int countWordsByLetters(Note note) {
+    int count = 0;
+    String[] fields = {note.getTitle(), note.getContent()};
+    for (String field : fields) {
+      field = sanitize(note, field);
+      boolean word = false;
+      int endOfLine = field.length() - 1;
+      for (int i = 0; i < field.length(); i++) {
+        if (Character.isLetter(field.charAt(i)) && i != endOfLine) {
+          word = true;
+        } else if (!Character.isLetter(field.charAt(i)) && word) {
+          count++;
+          word = false;
+        } else if (Character.isLetter(field.charAt(i)) && i == endOfLine) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private int countCharsTrimming(Note note) {
+    String titleAndContent = note.getTitle() + "\n" + note.getContent();
+    return Observable
+        .from(sanitize(note, titleAndContent).split(""))
+        .map(String::trim)
+        .filter(s -> !s.isEmpty())
+        .count().toBlocking().single();
+  }
+
+  private int countCharsExcludingSpaces(Note note) {
+    String titleAndContent = note.getTitle() + "\n" + note.getContent();
+    return Observable
+        .from(sanitize(note, titleAndContent).split(""))
+        .filter(s -> !s.matches("\\s"))
+        .count().toBlocking().single();
+  }
+
+}
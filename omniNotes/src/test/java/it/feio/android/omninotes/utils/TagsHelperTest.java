@@ -24,12 +24,16 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import androidx.core.util.Pair;
+import it.feio.android.omninotes.BaseUnitTest;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.models.Tag;
+import it.feio.android.pixlui.links.UrlCompleter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Random;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -148,4 +152,65 @@ public class TagsHelperTest {
     assertEquals("(and", result);
   }
 
+  @Test
+  public void retrieveTagsMatchesParseHashtagOnEachWord() {
+    List<String> corpus = new ArrayList<>(Arrays.asList("", " ", "#", "##", "# #", "#tag",
+        " #tag ", "\n#tag\n", "\t#tag\t", "a\t#tag", "#tag\r\n#tag", "#tag#tag", "a#tag",
+        "(#tag)", "#tag.", "#tag,", "#comma,comma", "#123numbered", "#numberedAfter123",
+        "#mid1dle", "#under_score", "#dash-ed", "#it's", "#привет", "#中华人民共和国", "#é",
+        "#e\u0301", "#\uD835\uDC00", "#\uD83D\uDE00", "#\uD835", "http://host/#anchor",
+        note.getContent()));
+    Random random = new Random(42);
+    String alphabet = "##  \n\t\r.,;:!?'\"()[]{}-_/\\@aZz09йЖ中\u0301\uD83D\uDE00";
+    for (int i = 0; i < 5000; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(40);
+      for (int j = 0; j < length; j++) {
+        text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      corpus.add(text.toString());
+    }
+
+    for (String text : corpus) {
+      assertEquals("Text: " + text, retrieveTagsSplittingWords(text),
+          TagsHelper.retrieveTags(text));
+    }
+  }
+
+  @Test
+  public void retrieveTagsAllocatesLessThanSplitting() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append("Some words of a quite long note, ").append(i % 10 == 0 ? "#tag" + i % 7 : "")
+          .append(" with a line\nbreak and (#tag) again ");
+    }
+    String content = text.toString();
+    int iterations = 2000;
+    assertEquals(retrieveTagsSplittingWords(content), TagsHelper.retrieveTags(content));
+
+    // Allocations are compared, not elapsed time, that depends on the machine load
+    long splitting = BaseUnitTest.measureAllocations(() -> retrieveTagsSplittingWords(content), iterations);
+    long scanning = BaseUnitTest.measureAllocations(() -> TagsHelper.retrieveTags(content), iterations);
+
+    if (splitting >= 0) {
+      assertTrue(scanning < splitting);
+    }
+  }
+
+  /**
+   * Previous implementation, splitting text into words to parse each of them
+   */
+  private HashMap<String, Integer> retrieveTagsSplittingWords(String text) {
+    HashMap<String, Integer> tagsMap = new HashMap<>();
+    String[] words = text.replaceAll("\n", " ").trim().split(" ");
+    for (String word : words) {
+      String parsedHashtag = UrlCompleter.parseHashtag(word);
+      if (StringUtils.isNotEmpty(parsedHashtag)) {
+        int count = tagsMap.get(parsedHashtag) == null ? 0 : tagsMap.get(parsedHashtag);
+        tagsMap.put(parsedHashtag, ++count);
+      }
+    }
+    return tagsMap;
+  }
+
 }